@@ -28,6 +28,7 @@ import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
+import dynamic.mapping.core.executor.VirtualThreads;
 import dynamic.mapping.model.MappingTreeNode;
 import dynamic.mapping.model.MappingTreeNodeSerializer;
 import io.micrometer.core.instrument.MeterRegistry;
@@ -100,7 +101,11 @@ public class App {
     }
 
     @Bean("cachedThreadPool")
-    public ExecutorService cachedThreadPool() {
+    public ExecutorService cachedThreadPool(@Value("${APP.virtualThreadsEnabled:false}") boolean virtualThreadsEnabled) {
+        // opt-in: run connector and mapping tasks on virtual threads, requires Java 21
+        if (virtualThreadsEnabled) {
+            return VirtualThreads.newThreadPerTaskExecutor("mapping-");
+        }
         return Executors.newCachedThreadPool();
     }
 
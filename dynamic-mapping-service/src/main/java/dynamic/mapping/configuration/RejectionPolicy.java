@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2022 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @authors Christof Strack, Stefan Witschel
+ */
+
+package dynamic.mapping.configuration;
+
+/**
+ * Policy applied when the bounded queue of an inbound worker pool is full
+ */
+public enum RejectionPolicy {
+    // block the connector callback until the queue has capacity again
+    BLOCK,
+    // drop the oldest queued message to accept the new message
+    DROP_OLDEST,
+    // run the message on a bounded spill pool of the connector, block when it is full as well
+    SPILL
+}
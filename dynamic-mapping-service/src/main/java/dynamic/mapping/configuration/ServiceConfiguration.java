@@ -34,6 +34,12 @@ import lombok.ToString;
 @ToString()
 @AllArgsConstructor
 public class ServiceConfiguration implements Cloneable {
+    public static final int DEFAULT_TOPIC_CACHE_SIZE = 100000;
+
+    public static final int DEFAULT_MAX_IN_FLIGHT_REQUESTS = 50;
+
+    public static final int DEFAULT_MAX_IN_FLIGHT_NOTIFICATIONS = 100;
+
     public ServiceConfiguration() {
         this.logPayload = false;
         this.logSubstitution = false;
@@ -44,6 +50,22 @@ public class ServiceConfiguration implements Cloneable {
         this.sendNotificationLifecycle = false;
         this.externalExtensionEnabled = true;
         this.outboundMappingEnabled = true;
+        this.inboundWorkerPoolSize = 10;
+        this.inboundQueueCapacity = 1000;
+        this.inboundRejectionPolicy = RejectionPolicy.BLOCK;
+        this.topicCacheSize = DEFAULT_TOPIC_CACHE_SIZE;
+        this.identityCacheSize = 100000;
+        this.identityCacheTtl = 3600;
+        this.identityCacheNegativeTtl = 60;
+        this.measurementBatchEnabled = false;
+        this.measurementBatchSize = 100;
+        this.measurementBatchMaxDelay = 50;
+        this.maxInFlightRequests = DEFAULT_MAX_IN_FLIGHT_REQUESTS;
+        this.streamingExtractionEnabled = false;
+        this.spoolEnabled = false;
+        this.spoolReplayRate = 0;
+        this.spoolMaxSize = 1024;
+        this.maxInFlightNotifications = DEFAULT_MAX_IN_FLIGHT_NOTIFICATIONS;
     }
 
     @NotNull
@@ -81,4 +103,86 @@ public class ServiceConfiguration implements Cloneable {
     @NotNull
     @JsonSetter(nulls = Nulls.SKIP)
     public boolean outboundMappingEnabled;
+
+    // number of workers processing inbound messages for each connector
+    @NotNull
+    @JsonSetter(nulls = Nulls.SKIP)
+    public int inboundWorkerPoolSize;
+
+    // number of inbound messages queued for each connector before the
+    // inboundRejectionPolicy is applied
+    @NotNull
+    @JsonSetter(nulls = Nulls.SKIP)
+    public int inboundQueueCapacity;
+
+    @NotNull
+    @JsonSetter(nulls = Nulls.SKIP)
+    public RejectionPolicy inboundRejectionPolicy;
+
+    // maximum number of concrete inbound topics with resolved mappings cached per
+    // tenant, 0 disables the cache
+    @NotNull
+    @JsonSetter(nulls = Nulls.SKIP)
+    public int topicCacheSize;
+
+    // maximum number of external ids resolved to global ids cached per tenant, 0
+    // disables the cache
+    @NotNull
+    @JsonSetter(nulls = Nulls.SKIP)
+    public int identityCacheSize;
+
+    // time to live in seconds of a resolved external id
+    @NotNull
+    @JsonSetter(nulls = Nulls.SKIP)
+    public int identityCacheTtl;
+
+    // time to live in seconds of an external id that does not exist
+    @NotNull
+    @JsonSetter(nulls = Nulls.SKIP)
+    public int identityCacheNegativeTtl;
+
+    // send measurements created by inbound mappings in bulk requests
+    @NotNull
+    @JsonSetter(nulls = Nulls.SKIP)
+    public boolean measurementBatchEnabled;
+
+    // maximum number of measurements sent in one bulk request
+    @NotNull
+    @JsonSetter(nulls = Nulls.SKIP)
+    public int measurementBatchSize;
+
+    // maximum time in milliseconds a measurement waits for its bulk request
+    @NotNull
+    @JsonSetter(nulls = Nulls.SKIP)
+    public long measurementBatchMaxDelay;
+
+    // maximum number of concurrent requests sent asynchronously to Cumulocity per tenant
+    @NotNull
+    @JsonSetter(nulls = Nulls.SKIP)
+    public int maxInFlightRequests;
+
+    // read only the fields referenced by simple paths from inbound JSON payloads
+    @NotNull
+    @JsonSetter(nulls = Nulls.SKIP)
+    public boolean streamingExtractionEnabled;
+
+    // spool requests on disk while Cumulocity is not reachable and replay them later, requires APP.spoolDirectory
+    @NotNull
+    @JsonSetter(nulls = Nulls.SKIP)
+    public boolean spoolEnabled;
+
+    // maximum number of spooled requests replayed per second, 0 replays as fast as the requests in flight allow
+    @NotNull
+    @JsonSetter(nulls = Nulls.SKIP)
+    public int spoolReplayRate;
+
+    // maximum size in MB of the spool of a tenant on disk, requests that do not fit fail, 0 does not limit the size
+    @NotNull
+    @JsonSetter(nulls = Nulls.SKIP)
+    public int spoolMaxSize;
+
+    // maximum number of outbound notifications per websocket, that are not yet published and acknowledged
+    @NotNull
+    @JsonSetter(nulls = Nulls.SKIP)
+    public int maxInFlightNotifications;
 }
@@ -1,5 +1,7 @@
 package dynamic.mapping.connector.core.callback;
 
+import java.nio.ByteBuffer;
+
 import javax.validation.constraints.NotNull;
 
 import lombok.Getter;
@@ -12,6 +14,10 @@ import lombok.Setter;
 public class ConnectorMessage {
     private byte[] payload;
 
+    // read-only view of the payload as received by the connector, avoids copying
+    // the payload into a byte[] when the processors can read from the buffer
+    private ByteBuffer payloadBuffer;
+
     private byte[] key;
 
     private String[] headers;
@@ -27,4 +33,52 @@ public class ConnectorMessage {
     private boolean sendPayload;
 
     private boolean supportsMessageContext;
+
+    /**
+     * Sets the payload as byte[], a payload buffer set before is discarded
+     */
+    public synchronized void setPayload(byte[] payload) {
+        this.payload = payload;
+        this.payloadBuffer = null;
+    }
+
+    public synchronized void setPayloadBuffer(ByteBuffer payloadBuffer) {
+        this.payloadBuffer = payloadBuffer != null ? payloadBuffer.asReadOnlyBuffer() : null;
+        this.payload = null;
+    }
+
+    /**
+     * @return the payload as byte[], when the payload was set as buffer it is
+     *         copied once on the first call
+     */
+    public synchronized byte[] getPayload() {
+        if (payload == null && payloadBuffer != null) {
+            ByteBuffer buffer = payloadBuffer.duplicate();
+            payload = new byte[buffer.remaining()];
+            buffer.get(payload);
+        }
+        return payload;
+    }
+
+    /**
+     * @return an independent read-only view of the payload, the position of the
+     *         view can be changed without affecting other readers
+     */
+    public ByteBuffer getPayloadBuffer() {
+        if (payloadBuffer != null) {
+            return payloadBuffer.duplicate();
+        }
+        return payload != null ? ByteBuffer.wrap(payload).asReadOnlyBuffer() : null;
+    }
+
+    public boolean hasPayload() {
+        return payloadBuffer != null || payload != null;
+    }
+
+    public int getPayloadLength() {
+        if (payloadBuffer != null) {
+            return payloadBuffer.remaining();
+        }
+        return payload != null ? payload.length : 0;
+    }
 }
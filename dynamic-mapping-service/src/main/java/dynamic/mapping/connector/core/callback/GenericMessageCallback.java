@@ -1,9 +1,47 @@
 package dynamic.mapping.connector.core.callback;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import dynamic.mapping.core.spool.RequestSpoolComponent;
+import dynamic.mapping.processor.model.C8YRequest;
+import dynamic.mapping.processor.model.ProcessingContext;
+
 public interface GenericMessageCallback {
     void onClose(String closeMessage, Throwable closeException);
 
-    void onMessage(ConnectorMessage message);
+    // returns the future of the processing of the message, or null if the message
+    // is not processed
+    CompletableFuture<?> onMessage(ConnectorMessage message);
+
+    // true if new messages have to wait until previous messages are processed
+    boolean isSaturated();
 
     void onError( Throwable errorException);
+
+    /**
+     * Returns true when a message has to be delivered again, because its
+     * processing did not complete: it was rejected or cancelled by the worker
+     * pool, or a request failed while Cumulocity was not reachable and could not
+     * be spooled. Messages that failed for other reasons would fail again and
+     * are not redelivered.
+     */
+    static boolean isRedeliveryRequired(Object result, Throwable error) {
+        if (error != null) {
+            return true;
+        }
+        if (result instanceof List) {
+            for (Object context : (List<?>) result) {
+                if (!(context instanceof ProcessingContext)) {
+                    continue;
+                }
+                for (C8YRequest request : ((ProcessingContext<?>) context).getRequests()) {
+                    if (request.hasError() && RequestSpoolComponent.isUnavailable(request.getError())) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
 }
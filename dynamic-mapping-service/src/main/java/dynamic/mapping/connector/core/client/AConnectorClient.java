@@ -356,7 +356,7 @@ public abstract class AConnectorClient {
     public boolean subscriptionTopicChanged(Mapping mapping) {
         Boolean subscriptionTopicChanged = false;
         Mapping activeMapping = null;
-        Optional<Mapping> activeMappingOptional = mappingComponent.getCacheMappingInbound().get(tenant).values()
+        Optional<Mapping> activeMappingOptional = mappingComponent.getCacheMappingInbound(tenant).values()
                 .stream()
                 .filter(m -> m.id.equals(mapping.id))
                 .findFirst();
@@ -371,7 +371,7 @@ public abstract class AConnectorClient {
     public boolean activationChanged(Mapping mapping) {
         Boolean activationChanged = false;
         Mapping activeMapping = null;
-        Optional<Mapping> activeMappingOptional = mappingComponent.getCacheMappingInbound().get(tenant).values()
+        Optional<Mapping> activeMappingOptional = mappingComponent.getCacheMappingInbound(tenant).values()
                 .stream()
                 .filter(m -> m.id.equals(mapping.id))
                 .findFirst();
@@ -529,6 +529,7 @@ public abstract class AConnectorClient {
 
     public void stopHousekeepingAndClose() {
         List<Runnable> stoppedTask = this.housekeepingExecutor.shutdownNow();
+        configurationRegistry.removeWorkerPool(tenant, getConnectorIdent());
         // release all resources
         close();
         log.info("Tenant {} - Shutdown housekeepingTasks: {}", tenant, stoppedTask);
@@ -3,5 +3,6 @@ package dynamic.mapping.connector.core.client;
 public enum ConnectorType {
     MQTT,
     MQTT_SERVICE,
+    MQTT5,
     KAFKA,
 }
@@ -21,11 +21,15 @@
 
 package dynamic.mapping.connector.kafka;
 
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -33,6 +37,8 @@ import org.apache.commons.lang3.mutable.MutableInt;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
 // import org.apache.kafka.common.serialization.StringDeserializer;
 // import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.core.io.support.PropertiesLoaderUtils;
@@ -75,6 +81,21 @@ public class KafkaClient extends AConnectorClient {
                         null));
         configProps.put("groupId",
                 new ConnectorProperty(false, 3, ConnectorPropertyType.STRING_PROPERTY, false, false, null, null));
+        configProps.put("lingerMs",
+                new ConnectorProperty(false, 6, ConnectorPropertyType.NUMERIC_PROPERTY, false, false,
+                        DEFAULT_LINGER_MS, null));
+        configProps.put("batchSize",
+                new ConnectorProperty(false, 7, ConnectorPropertyType.NUMERIC_PROPERTY, false, false,
+                        DEFAULT_BATCH_SIZE, null));
+        configProps.put("compressionType",
+                new ConnectorProperty(false, 8, ConnectorPropertyType.OPTION_PROPERTY, false, false,
+                        DEFAULT_COMPRESSION_TYPE,
+                        Map.ofEntries(
+                                new AbstractMap.SimpleEntry<String, String>("none", "none"),
+                                new AbstractMap.SimpleEntry<String, String>("gzip", "gzip"),
+                                new AbstractMap.SimpleEntry<String, String>("snappy", "snappy"),
+                                new AbstractMap.SimpleEntry<String, String>("lz4", "lz4"),
+                                new AbstractMap.SimpleEntry<String, String>("zstd", "zstd"))));
 
         Resource resourceProducer = new ClassPathResource(KAFKA_PRODUCER_PROPERTIES);
         defaultPropertiesProducer = PropertiesLoaderUtils.loadProperties(resourceProducer);
@@ -188,7 +209,13 @@ public class KafkaClient extends AConnectorClient {
     private Properties defaultPropertiesConsumer;
     private Properties defaultPropertiesProducer;
 
-    private KafkaProducer<String, String> kafkaProducer;
+    private KafkaProducer<byte[], byte[]> kafkaProducer;
+
+    private static final int DEFAULT_LINGER_MS = 5;
+
+    private static final int DEFAULT_BATCH_SIZE = 65536;
+
+    private static final String DEFAULT_COMPRESSION_TYPE = "lz4";
 
     private String KAFKA_CONSUMER_PROPERTIES = "/kafka-consumer.properties";
     private String KAFKA_PRODUCER_PROPERTIES = "/kafka-producer.properties";
@@ -226,6 +253,18 @@ public class KafkaClient extends AConnectorClient {
             defaultPropertiesProducer.put("sasl.jaas.config", jaasCfg);
             defaultPropertiesProducer.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
             defaultPropertiesProducer.put("group.id", groupId);
+            // records are batched per partition and sent as byte[] without conversion
+            defaultPropertiesProducer.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG,
+                    ByteArraySerializer.class.getName());
+            defaultPropertiesProducer.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG,
+                    ByteArraySerializer.class.getName());
+            defaultPropertiesProducer.put(ProducerConfig.LINGER_MS_CONFIG, String.valueOf(connectorConfiguration
+                    .getProperties().getOrDefault("lingerMs", DEFAULT_LINGER_MS)));
+            defaultPropertiesProducer.put(ProducerConfig.BATCH_SIZE_CONFIG, String.valueOf(connectorConfiguration
+                    .getProperties().getOrDefault("batchSize", DEFAULT_BATCH_SIZE)));
+            defaultPropertiesProducer.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, String.valueOf(
+                    connectorConfiguration.getProperties().getOrDefault("compressionType",
+                            DEFAULT_COMPRESSION_TYPE)));
             log.info("Tenant {} - Trying to connect {} - phase II: (shouldConnect):{} {}", tenant,
                     getConnectorName(),
                     shouldConnect(), bootstrapServers);
@@ -234,14 +273,10 @@ public class KafkaClient extends AConnectorClient {
             try {
                 // test if the mqtt connection is configured and enabled
                 if (shouldConnect()) {
-                    mappingComponent.rebuildMappingOutboundCache(tenant);
-                    // in order to keep MappingInboundCache and ActiveSubscriptionMappingInbound in
-                    // sync, the ActiveSubscriptionMappingInbound is build on the
-                    // previously used updatedMappings
                     kafkaProducer = new KafkaProducer<>(defaultPropertiesProducer);
                     connectionState.setTrue();
                     updateConnectorStatusAndSend(ConnectorStatus.CONNECTED, true, true);
-                    List<Mapping> updatedMappings = mappingComponent.rebuildMappingInboundCache(tenant);
+                    List<Mapping> updatedMappings = mappingComponent.getCachedMappingsInbound(tenant);
                     updateActiveSubscriptions(updatedMappings, true);
                 }
                 successful = true;
@@ -285,7 +320,7 @@ public class KafkaClient extends AConnectorClient {
 
             connectionState.setFalse();
             updateConnectorStatusAndSend(ConnectorStatus.DISCONNECTED, true, true);
-            List<Mapping> updatedMappings = mappingComponent.rebuildMappingInboundCache(tenant);
+            List<Mapping> updatedMappings = mappingComponent.getCachedMappingsInbound(tenant);
             updateActiveSubscriptions(updatedMappings, true);
             kafkaProducer.close();
             log.info("Tenant {} - Disconnected from from broker: {}", tenant, getConnectorName(),
@@ -311,7 +346,7 @@ public class KafkaClient extends AConnectorClient {
     public void subscribe(String topic, QOS qos) throws ConnectorException {
         TopicConsumer kafkaConsumer = new TopicConsumer(
                 new TopicConfig(tenant, bootstrapServers, topic, username, password, groupId,
-                        defaultPropertiesConsumer));
+                        defaultPropertiesConsumer), cachedThreadPool);
         consumerList.put(topic, kafkaConsumer);
         TopicConsumerCallback topicConsumerCallback = new TopicConsumerCallback(dispatcher, tenant, getConnectorIdent(),
                 topic, true);
@@ -362,13 +397,34 @@ public class KafkaClient extends AConnectorClient {
     public void publishMEAO(ProcessingContext<?> context) {
         C8YRequest currentRequest = context.getCurrentRequest();
         String payload = currentRequest.getRequest();
-        String key = currentRequest.getSource();
+        byte[] key = currentRequest.getSource() != null ? currentRequest.getSource().getBytes(StandardCharsets.UTF_8)
+                : null;
         if (context.isSupportsMessageContext() && context.getKey() != null) {
-            key = new String(context.getKey());
+            key = context.getKey();
         }
-        kafkaProducer.send(new ProducerRecord<String, String>(context.getMapping().publishTopic, key, payload));
-
-        log.info("Tenant {} - Published outbound message: {} for mapping: {} on topic: {}, {}", tenant, payload,
-                context.getMapping().name, context.getResolvedPublishTopic(), connectorName);
+        String topic = context.getResolvedPublishTopic() != null ? context.getResolvedPublishTopic()
+                : context.getMapping().publishTopic;
+
+        // the delivery is reported asynchronously, records are batched by the producer
+        CompletableFuture<RecordMetadata> delivery = new CompletableFuture<>();
+        long start = System.nanoTime();
+        kafkaProducer.send(new ProducerRecord<byte[], byte[]>(topic, key, payload.getBytes(StandardCharsets.UTF_8)),
+                (metadata, e) -> {
+                    if (e != null) {
+                        currentRequest.setError(e);
+                        log.error("Tenant {} - Error publishing outbound message for mapping: {} on topic: {}, {}",
+                                tenant, context.getMapping().name, topic, connectorName, e);
+                        delivery.completeExceptionally(e);
+                    } else {
+                        long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                        currentRequest.setResponse(String.format(
+                                "{\"topic\":\"%s\",\"partition\":%d,\"offset\":%d,\"latency\":%d}",
+                                metadata.topic(), metadata.partition(), metadata.offset(), latency));
+                        log.info("Tenant {} - Published outbound message: {} for mapping: {} on topic: {} in {} ms, {}",
+                                tenant, payload, context.getMapping().name, topic, latency, connectorName);
+                        delivery.complete(metadata);
+                    }
+                });
+        context.addPendingRequest(delivery);
     }
 }
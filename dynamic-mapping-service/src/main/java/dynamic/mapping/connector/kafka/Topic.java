@@ -3,40 +3,121 @@ package dynamic.mapping.connector.kafka;
 import org.apache.commons.lang3.SerializationUtils;
 import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
-import org.apache.kafka.clients.producer.ProducerConfig;
-import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
 
 import lombok.extern.slf4j.Slf4j;
 
+import java.nio.ByteBuffer;
 import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
+/**
+ * Topic
+ * 
+ * Consumes the records of a topic and hands them to the listener without
+ * waiting for their processing. Records of a partition are processed in
+ * parallel, only records with the same key are processed in the order of
+ * their offsets.
+ * Offsets are committed manually: the offset of a partition is only advanced
+ * when the processing of all records up to this offset is completed.
+ * A record that was not processed, e.g. because it was rejected or the
+ * listener failed, is not skipped: the partition is rewound to this record and
+ * paused for a while, then the record and all following records are consumed
+ * again.
+ * When too many records are in progress, or the listener is saturated, all
+ * assigned partitions are paused until the processing catches up.
+ */
 @Slf4j
 public class Topic implements AutoCloseable {
+    // maximum number of records in progress before the partitions are paused, they
+    // are resumed when half of them are completed
+    private static final int MAX_PENDING_RECORDS = 1000;
+
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(500);
+
+    // a partition rewound to a record that was not processed is paused for this
+    // period before the record is consumed again
+    static final Duration RETRY_BACKOFF = Duration.ofSeconds(5);
+
     private final TopicConfig topicConfig;
 
     private final Consumer<byte[], byte[]> consumer;
 
-    public Topic(final TopicConfig topicConfig) {
+    // records are dispatched on this executor when they have to wait for the
+    // previous record with the same key
+    private final Executor dispatchExecutor;
+
+    private TopicEventListener listener;
+
+    // records in progress in the order of their offsets, per partition
+    private final Map<TopicPartition, Deque<PendingRecord>> pendingRecords = new HashMap<>();
+
+    // last dispatched record per partition and key, to keep the order per key
+    private final Map<TopicPartition, Map<ByteBuffer, CompletableFuture<?>>> lastRecordPerKey = new HashMap<>();
+
+    // partitions paused until the time a failed record is consumed again
+    private final Map<TopicPartition, Long> retryPartitions = new HashMap<>();
+
+    private int pendingCount;
+
+    private boolean paused;
+
+    private static class PendingRecord {
+        private final long offset;
+        private final CompletableFuture<?> processing;
+
+        PendingRecord(long offset, CompletableFuture<?> processing) {
+            this.offset = offset;
+            this.processing = processing;
+        }
+    }
+
+    public Topic(final TopicConfig topicConfig, final Executor dispatchExecutor) {
+        this(topicConfig, createConsumer(topicConfig), dispatchExecutor);
+    }
+
+    Topic(final TopicConfig topicConfig, final Consumer<byte[], byte[]> consumer, final Executor dispatchExecutor) {
         this.topicConfig = topicConfig;
+        this.consumer = consumer;
+        this.dispatchExecutor = dispatchExecutor;
+    }
 
+    private static Consumer<byte[], byte[]> createConsumer(final TopicConfig topicConfig) {
         final Properties props = SerializationUtils.clone(topicConfig.getDefaultPropertiesConsumer());
 
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, topicConfig.getBootstrapServers());
         props.put("group.id", topicConfig.getGroupId());
         // this is a common topic consumer, so we just pull byte arrays and pass them
         // to a listener, we don't do any decoding in here
-        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class.getName());
-        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class.getName());
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+        // offsets are committed when the records are processed
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
         String jaasTemplate = "org.apache.kafka.common.security.scram.ScramLoginModule required username=\"%s\" password=\"%s\";";
         String jaasCfg = String.format(jaasTemplate, topicConfig.getUsername(), topicConfig.getPassword());
         props.put("sasl.jaas.config", jaasCfg);
 
-        consumer = new KafkaConsumer<>(props);
+        Consumer<byte[], byte[]> consumer = new KafkaConsumer<>(props);
         try {
             consumer.partitionsFor(topicConfig.getTopic()); // just to check connectivity immediately
         } catch (final Exception e) {
@@ -46,6 +127,7 @@ public class Topic implements AutoCloseable {
             }
             throw e;
         }
+        return consumer;
     }
 
     /**
@@ -60,47 +142,222 @@ public class Topic implements AutoCloseable {
      * @param listener
      */
     public void consumeUntilError(final TopicEventListener listener) {
-        consumer.subscribe(Arrays.asList(topicConfig.getTopic()));
-
+        subscribe(listener);
         while (true) {
-            final ConsumerRecords<byte[], byte[]> records = consumer.poll(Duration.ofSeconds(10));
-            for (ConsumerRecord<byte[], byte[]> record : records) {
-                try {
-                    Object key = record.key();
-                    Object event = record.value();
-                    byte[] keyByte;
-                    byte[] eventByte;
-                    if (key instanceof String) {
-                        keyByte = ((String) key).getBytes();
-                    } else {
-                        keyByte = record.key();
-                    }
-                    if (event instanceof String) {
-                        eventByte = ((String) event).getBytes();
-                    } else {
-                        eventByte = record.key();
-                    }
-                    listener.onEvent(keyByte, eventByte);
-                } catch (final InterruptedException e) { // can be thrown by a blocking operation inside onEvent()
-                    throw new org.apache.kafka.common.errors.InterruptException(e);
-                } catch (final Exception error) {
-                    // just log ("Unexpected error while listener.onEvent() notification", e)
-                    // don't corrupt the consuming loop because of
-                    // an error in a listener
-                    log.error("Tenant {} - Failed to process message on topic {} with error: ", topicConfig.getTenant(),
-                            topicConfig.getTopic(),
-                            error);
+            poll();
+        }
+    }
+
+    void subscribe(final TopicEventListener listener) {
+        this.listener = listener;
+        consumer.subscribe(Arrays.asList(topicConfig.getTopic()), new ConsumerRebalanceListener() {
+            @Override
+            public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+                revoke(partitions);
+            }
+
+            @Override
+            public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+                if (paused) {
+                    consumer.pause(partitions);
+                }
+            }
+        });
+    }
+
+    void revoke(Collection<TopicPartition> partitions) {
+        // commit what is processed, records still in progress are processed again by
+        // the new owner of the partition
+        commitCompleted(true);
+        partitions.forEach(partition -> {
+            Deque<PendingRecord> pending = pendingRecords.remove(partition);
+            if (pending != null) {
+                pendingCount -= pending.size();
+            }
+            lastRecordPerKey.remove(partition);
+            retryPartitions.remove(partition);
+        });
+    }
+
+    void poll() {
+        resumeRetryPartitions();
+        final ConsumerRecords<byte[], byte[]> records = consumer.poll(POLL_TIMEOUT);
+        for (ConsumerRecord<byte[], byte[]> record : records) {
+            TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+            CompletableFuture<?> processing = dispatch(partition, record);
+            pendingRecords.computeIfAbsent(partition, p -> new ArrayDeque<>())
+                    .add(new PendingRecord(record.offset(), processing));
+            pendingCount++;
+        }
+        commitCompleted(false);
+        applyBackpressure();
+    }
+
+    int getPendingCount() {
+        return pendingCount;
+    }
+
+    private CompletableFuture<?> dispatch(TopicPartition partition, ConsumerRecord<byte[], byte[]> record) {
+        byte[] key = record.key();
+        if (key == null) {
+            // records without key have no order
+            return onEvent(key, record.value());
+        }
+        Map<ByteBuffer, CompletableFuture<?>> lastRecords = lastRecordPerKey.computeIfAbsent(partition,
+                p -> new HashMap<>());
+        ByteBuffer laneKey = ByteBuffer.wrap(key);
+        CompletableFuture<?> previous = lastRecords.get(laneKey);
+        CompletableFuture<?> processing;
+        if (previous == null || previous.isDone()) {
+            processing = onEvent(key, record.value());
+        } else {
+            // wait for the previous record with the same key, the failure of the previous
+            // record does not stop the following records
+            processing = previous.handle((result, e) -> null)
+                    .thenComposeAsync(v -> onEvent(key, record.value()), dispatchExecutor);
+        }
+        lastRecords.put(laneKey, processing);
+        return processing;
+    }
+
+    private CompletableFuture<?> onEvent(byte[] key, byte[] event) {
+        try {
+            CompletableFuture<?> processing = listener.onEvent(key, event);
+            return processing != null ? processing : CompletableFuture.completedFuture(null);
+        } catch (final InterruptedException e) { // can be thrown by a blocking operation inside onEvent()
+            throw new org.apache.kafka.common.errors.InterruptException(e);
+        } catch (final Exception error) {
+            // just log ("Unexpected error while listener.onEvent() notification", e)
+            // don't corrupt the consuming loop because of
+            // an error in a listener, the record is consumed again
+            log.error("Tenant {} - Failed to process message on topic {} with error: ", topicConfig.getTenant(),
+                    topicConfig.getTopic(),
+                    error);
+            return CompletableFuture.failedFuture(error);
+        }
+    }
+
+    private boolean isRedeliveryRequired(CompletableFuture<?> processing) {
+        try {
+            return listener.isRedeliveryRequired(processing.getNow(null), null);
+        } catch (CancellationException e) {
+            return listener.isRedeliveryRequired(null, e);
+        } catch (CompletionException e) {
+            return listener.isRedeliveryRequired(null, e.getCause() != null ? e.getCause() : e);
+        }
+    }
+
+    // commit per partition the offset following the last record, for which all
+    // previous records are processed. A partition is rewound to the first record
+    // that was not processed
+    private void commitCompleted(boolean sync) {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        Iterator<Map.Entry<TopicPartition, Deque<PendingRecord>>> partitions = pendingRecords.entrySet().iterator();
+        while (partitions.hasNext()) {
+            Map.Entry<TopicPartition, Deque<PendingRecord>> entry = partitions.next();
+            TopicPartition partition = entry.getKey();
+            Deque<PendingRecord> pending = entry.getValue();
+            PendingRecord completed = null;
+            while (!pending.isEmpty() && pending.peekFirst().processing.isDone()) {
+                PendingRecord next = pending.peekFirst();
+                if (isRedeliveryRequired(next.processing)) {
+                    retry(partition, next.offset);
+                    // the following records are consumed again as well
+                    pendingCount -= pending.size();
+                    partitions.remove();
+                    break;
                 }
+                completed = pending.pollFirst();
+                pendingCount--;
             }
+            if (completed != null) {
+                offsets.put(partition, new OffsetAndMetadata(completed.offset + 1));
+            }
+        }
+        lastRecordPerKey.values().forEach(lastRecords -> {
+            Iterator<CompletableFuture<?>> it = lastRecords.values().iterator();
+            while (it.hasNext()) {
+                if (it.next().isDone()) {
+                    it.remove();
+                }
+            }
+        });
+        if (offsets.isEmpty()) {
+            return;
+        }
+        if (sync) {
+            consumer.commitSync(offsets);
+        } else {
+            consumer.commitAsync(offsets, (committed, e) -> {
+                if (e != null) {
+                    log.warn("Tenant {} - Failed to commit offsets on topic {}: {}", topicConfig.getTenant(),
+                            topicConfig.getTopic(), e.getMessage());
+                }
+            });
+        }
+    }
+
+    private void retry(TopicPartition partition, long offset) {
+        log.warn("Tenant {} - Message at offset {} of {} not processed, consuming it again in {} s",
+                topicConfig.getTenant(), offset, partition, RETRY_BACKOFF.toSeconds());
+        consumer.seek(partition, offset);
+        consumer.pause(Collections.singleton(partition));
+        retryPartitions.put(partition, System.currentTimeMillis() + RETRY_BACKOFF.toMillis());
+    }
+
+    private void resumeRetryPartitions() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<TopicPartition, Long>> it = retryPartitions.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<TopicPartition, Long> entry = it.next();
+            if (entry.getValue() <= now) {
+                it.remove();
+                // while all partitions are paused, the partition is resumed with the others
+                if (!paused) {
+                    consumer.resume(Collections.singleton(entry.getKey()));
+                }
+            }
+        }
+    }
+
+    private void applyBackpressure() {
+        if (!paused && (pendingCount >= MAX_PENDING_RECORDS || listener.isSaturated())) {
+            consumer.pause(consumer.assignment());
+            paused = true;
+            log.debug("Tenant {} - Paused consuming topic {}, records in progress: {}", topicConfig.getTenant(),
+                    topicConfig.getTopic(), pendingCount);
+        } else if (paused && pendingCount <= MAX_PENDING_RECORDS / 2 && !listener.isSaturated()) {
+            Set<TopicPartition> resumed = new HashSet<>(consumer.paused());
+            resumed.removeAll(retryPartitions.keySet());
+            consumer.resume(resumed);
+            paused = false;
+            log.debug("Tenant {} - Resumed consuming topic {}, records in progress: {}", topicConfig.getTenant(),
+                    topicConfig.getTopic(), pendingCount);
         }
     }
 
     @Override
     public void close() {
+        // the consuming thread is stopped by an interrupt, which would abort the
+        // blocking commit, the flag is restored when the consumer is closed
+        boolean interrupted = Thread.interrupted();
+        try {
+            // commit the processed records
+            commitCompleted(true);
+        } catch (final Exception e) {
+            log.warn("Tenant {} - Failed to commit offsets on topic {} when closing: {}", topicConfig.getTenant(),
+                    topicConfig.getTopic(), e.getMessage());
+        }
         try {
             consumer.wakeup();
         } finally {
-            consumer.close();
+            try {
+                consumer.close();
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
         }
     }
 }
@@ -21,16 +21,21 @@
 
 package dynamic.mapping.connector.kafka;
 
+import java.util.concurrent.Executor;
+
 import org.apache.kafka.common.errors.TopicAuthorizationException;
 
 public class TopicConsumer {
     private final TopicConfig topicConfig;
 
+    private final Executor dispatchExecutor;
+
     private ConsumingThread consumingThread; // guarded by this
     private boolean closed; // guarded by this
 
-    public TopicConsumer(final TopicConfig topicConfig) {
+    public TopicConsumer(final TopicConfig topicConfig, final Executor dispatchExecutor) {
         this.topicConfig = topicConfig;
+        this.dispatchExecutor = dispatchExecutor;
     }
 
     public synchronized void start(final TopicConsumerListener listener) {
@@ -101,7 +106,7 @@ public class TopicConsumer {
             while (continueToListen) {
                 Topic tc = null;
                 try {
-                    tc = new Topic(topicConfig);
+                    tc = new Topic(topicConfig, dispatchExecutor);
 
                     try {
                         listener.onStarted();
@@ -21,6 +21,8 @@
 
 package dynamic.mapping.connector.kafka;
 
+import java.util.concurrent.CompletableFuture;
+
 import dynamic.mapping.connector.core.callback.ConnectorMessage;
 import dynamic.mapping.connector.core.callback.GenericMessageCallback;
 import lombok.extern.slf4j.Slf4j;
@@ -43,7 +45,7 @@ public class TopicConsumerCallback implements TopicConsumerListener {
     }
 
     @Override
-    public void onEvent(byte[] key, byte[] event) throws Exception {
+    public CompletableFuture<?> onEvent(byte[] key, byte[] event) throws Exception {
         ConnectorMessage connectorMessage = new ConnectorMessage();
         connectorMessage.setPayload(event);
         connectorMessage.setKey(key);
@@ -52,7 +54,17 @@ public class TopicConsumerCallback implements TopicConsumerListener {
         connectorMessage.setTopic(topic);
         connectorMessage.setConnectorIdent(connectorIdent);
         connectorMessage.setSupportsMessageContext(supportsMessageContext);
-        genericMessageCallback.onMessage(connectorMessage);
+        return genericMessageCallback.onMessage(connectorMessage);
+    }
+
+    @Override
+    public boolean isSaturated() {
+        return genericMessageCallback.isSaturated();
+    }
+
+    @Override
+    public boolean isRedeliveryRequired(Object result, Throwable error) {
+        return GenericMessageCallback.isRedeliveryRequired(result, error);
     }
 
     @Override
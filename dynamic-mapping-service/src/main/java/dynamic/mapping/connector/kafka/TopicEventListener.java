@@ -21,6 +21,19 @@
 
 package dynamic.mapping.connector.kafka;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface TopicEventListener {
-    void onEvent(byte[] key, byte[] event) throws Exception;
+    // returns the future of the processing of the event, or null if the event is
+    // not processed
+    CompletableFuture<?> onEvent(byte[] key, byte[] event) throws Exception;
+
+    // no further events should be delivered until the processing catches up
+    boolean isSaturated();
+
+    // true if the event has to be consumed again, because its processing did not
+    // complete
+    default boolean isRedeliveryRequired(Object result, Throwable error) {
+        return error != null;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2022 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @authors Christof Strack, Stefan Witschel
+ */
+
+
+package dynamic.mapping.connector.mqtt;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.hivemq.client.mqtt.MqttGlobalPublishFilter;
+import com.hivemq.client.mqtt.datatypes.MqttQos;
+import com.hivemq.client.mqtt.mqtt5.Mqtt5AsyncClient;
+import com.hivemq.client.mqtt.mqtt5.Mqtt5BlockingClient;
+import com.hivemq.client.mqtt.mqtt5.Mqtt5Client;
+import com.hivemq.client.mqtt.mqtt5.Mqtt5ClientBuilder;
+import com.hivemq.client.mqtt.mqtt5.message.auth.Mqtt5SimpleAuth;
+import com.hivemq.client.mqtt.mqtt5.message.auth.Mqtt5SimpleAuthBuilder;
+import com.hivemq.client.mqtt.mqtt5.message.connect.connack.Mqtt5ConnAck;
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
+
+import dynamic.mapping.configuration.ConnectorConfiguration;
+import dynamic.mapping.connector.core.ConnectorProperty;
+import dynamic.mapping.connector.core.ConnectorPropertyType;
+import dynamic.mapping.connector.core.ConnectorSpecification;
+import dynamic.mapping.connector.core.client.ConnectorException;
+import dynamic.mapping.connector.core.client.ConnectorType;
+import dynamic.mapping.core.ConfigurationRegistry;
+import dynamic.mapping.core.ConnectorStatus;
+import dynamic.mapping.processor.inbound.AsynchronousDispatcherInbound;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * MQTT5Client
+ * 
+ * Connector for external MQTT 5 brokers. In addition to the features of the
+ * <code>MQTTClient</code> it supports shared subscriptions: when the property
+ * <code>sharedSubscriptionGroup</code> is set, all topics are subscribed as
+ * <code>$share/&lt;group&gt;/&lt;topic&gt;</code>, so that the broker
+ * distributes the messages across all replicas of the microservice subscribed
+ * with the same group instead of delivering every message to every replica.
+ */
+@Slf4j
+public class MQTT5Client extends MQTTClient {
+    private static final String SHARED_SUBSCRIPTION_PREFIX = "$share/";
+
+    // session is kept by the broker for one hour after a disconnect, if
+    // at-least-once delivery is used
+    private static final long SESSION_EXPIRY_INTERVAL_SECONDS = 3600;
+
+    protected static final int DEFAULT_MAX_UNACKNOWLEDGED_MESSAGES = 100;
+
+    public MQTT5Client() {
+        initializeSpecification();
+    }
+
+    public MQTT5Client(ConfigurationRegistry configurationRegistry,
+            ConnectorConfiguration connectorConfiguration,
+            AsynchronousDispatcherInbound dispatcher, String additionalSubscriptionIdTest, String tenant) {
+        super(configurationRegistry, connectorConfiguration, dispatcher, additionalSubscriptionIdTest, tenant);
+        initializeSpecification();
+    }
+
+    private void initializeSpecification() {
+        Map<String, ConnectorProperty> configProps = createConfigProperties();
+        configProps.put("maxUnacknowledgedMessages",
+                new ConnectorProperty(false, 13, ConnectorPropertyType.NUMERIC_PROPERTY, false, false,
+                        DEFAULT_MAX_UNACKNOWLEDGED_MESSAGES, null));
+        configProps.put("sharedSubscriptionGroup",
+                new ConnectorProperty(false, 14, ConnectorPropertyType.STRING_PROPERTY, false, false, null, null));
+        String description = "Generic connector for connecting to external MQTT 5 broker over tcp or websocket. When a shared subscription group is set, messages are distributed across all replicas of the mapper subscribed with the same group.";
+        connectorType = ConnectorType.MQTT5;
+        specification = new ConnectorSpecification(description, connectorType, configProps, false);
+    }
+
+    protected Mqtt5BlockingClient mqtt5Client;
+
+    /**
+     * @return the topic filter used on the broker, i.e. the shared subscription of
+     *         the topic if a group is configured
+     */
+    protected String getSubscriptionFilter(String topic) {
+        String group = (String) connectorConfiguration.getProperties().get("sharedSubscriptionGroup");
+        if (StringUtils.isEmpty(group) || topic.startsWith("$")) {
+            return topic;
+        }
+        return SHARED_SUBSCRIPTION_PREFIX + group + "/" + topic;
+    }
+
+    private static String getReplicaId() {
+        // the pod name of the replica, if running in kubernetes
+        String hostname = System.getenv("HOSTNAME");
+        return StringUtils.isEmpty(hostname) ? Long.toString(ProcessHandle.current().pid()) : hostname;
+    }
+
+    @Override
+    public boolean isConfigValid(ConnectorConfiguration configuration) {
+        if (!super.isConfigValid(configuration)) {
+            return false;
+        }
+        // the share name must not contain topic separators or wildcards
+        String group = (String) configuration.getProperties().get("sharedSubscriptionGroup");
+        return StringUtils.isEmpty(group) || StringUtils.containsNone(group, '/', '+', '#');
+    }
+
+    @Override
+    public void connect() {
+        updateConnectorStatusAndSend(ConnectorStatus.CONNECTING, true, true);
+        log.info("Tenant {} - Trying to connect to {} - phase I: (isConnected:shouldConnect) ({}:{})",
+                tenant, getConnectorName(), isConnected(),
+                shouldConnect());
+        if (isConnected())
+            disconnect();
+
+        String protocol = (String) connectorConfiguration.getProperties().getOrDefault("protocol", false);
+        boolean useSelfSignedCertificate = (Boolean) connectorConfiguration.getProperties()
+                .getOrDefault("useSelfSignedCertificate", false);
+
+        String mqttHost = (String) connectorConfiguration.getProperties().get("mqttHost");
+        String clientId = (String) connectorConfiguration.getProperties().get("clientId");
+        int mqttPort = (Integer) connectorConfiguration.getProperties().get("mqttPort");
+        String user = (String) connectorConfiguration.getProperties().get("user");
+        String password = (String) connectorConfiguration.getProperties().get("password");
+        initializePublishWindow();
+        boolean atLeastOnceDelivery = isAtLeastOnceDelivery();
+        Number maxUnacknowledgedMessages = (Number) connectorConfiguration.getProperties()
+                .getOrDefault("maxUnacknowledgedMessages", DEFAULT_MAX_UNACKNOWLEDGED_MESSAGES);
+
+        // replicas sharing a subscription connect with the same configuration, the
+        // client identifier has to be unique per replica
+        String group = (String) connectorConfiguration.getProperties().get("sharedSubscriptionGroup");
+        if (!StringUtils.isEmpty(group)) {
+            clientId = clientId + "_" + getReplicaId();
+        }
+
+        Mqtt5ClientBuilder partialBuilder = Mqtt5Client.builder().serverHost(mqttHost).serverPort(mqttPort)
+                .identifier(clientId + additionalSubscriptionIdTest);
+
+        // is username & password used
+        if (!StringUtils.isEmpty(user)) {
+            Mqtt5SimpleAuthBuilder.Complete simpleAuthComplete = Mqtt5SimpleAuth.builder().username(user);
+            if (!StringUtils.isEmpty(password)) {
+                simpleAuthComplete = simpleAuthComplete.password(password.getBytes());
+            }
+            partialBuilder = partialBuilder
+                    .simpleAuth(simpleAuthComplete.build());
+        }
+
+        // finally build mqtt5Client
+        mqtt5Client = configureBuilder(partialBuilder, protocol, useSelfSignedCertificate).buildBlocking();
+
+        String configuredUrl = getConfiguredUrl(mqtt5Client.getConfig());
+        // Registering Callback
+        Mqtt5AsyncClient mqtt5AsyncClient = mqtt5Client.toAsync();
+        mqttCallback = createCallback();
+        mqtt5AsyncClient.publishes(MqttGlobalPublishFilter.ALL,
+                publish -> mqttCallback.accept(publish.getTopic(), publish.getPayload(), publish::acknowledge),
+                createCallbackExecutor(), atLeastOnceDelivery);
+
+        loadConfiguration();
+        connectUntilConnected(configuredUrl, () -> {
+            // with at-least-once delivery the session survives a reconnect and the
+            // broker does not send more unacknowledged messages than the receive maximum
+            Mqtt5ConnAck ack = mqtt5Client.connectWith()
+                    .cleanStart(!atLeastOnceDelivery)
+                    .sessionExpiryInterval(atLeastOnceDelivery ? SESSION_EXPIRY_INTERVAL_SECONDS : 0)
+                    .restrictions()
+                    .receiveMaximum(Math.max(1, Math.min(maxUnacknowledgedMessages.intValue(), 65535)))
+                    .applyRestrictions()
+                    .keepAlive(60)
+                    .send();
+            if (ack.getReasonCode().isError()) {
+                throw new ConnectorException(
+                        String.format("Tenant %s - Error connecting to broker: %s. Errorcode: %s", tenant,
+                                mqtt5Client.getConfig().getServerHost(), ack.getReasonCode().name()));
+            }
+        });
+    }
+
+    @Override
+    protected boolean isBrokerConnected() {
+        return mqtt5Client != null && mqtt5Client.getState().isConnected();
+    }
+
+    @Override
+    protected String getServerHost() {
+        return mqtt5Client == null ? (String) connectorConfiguration.getProperties().get("mqttHost")
+                : mqtt5Client.getConfig().getServerHost();
+    }
+
+    @Override
+    protected void disconnectFromBroker() {
+        mqtt5Client.disconnect();
+    }
+
+    @Override
+    protected CompletableFuture<?> sendSubscribe(String topic, MqttQos qos) {
+        return mqtt5Client.toAsync().subscribeWith().topicFilter(getSubscriptionFilter(topic)).qos(qos).send();
+    }
+
+    @Override
+    protected void sendUnsubscribe(String topic) {
+        mqtt5Client.unsubscribeWith().topicFilter(getSubscriptionFilter(topic)).send();
+    }
+
+    @Override
+    protected CompletableFuture<?> sendPublish(String topic, MqttQos qos, byte[] payload) {
+        Mqtt5Publish mqttMessage = Mqtt5Publish.builder().topic(topic).qos(qos).payload(payload).build();
+        return mqtt5Client.toAsync().publish(mqttMessage).thenApply(result -> {
+            // a negative acknowledgement of the broker is reported in the result
+            if (result.getError().isPresent()) {
+                throw new CompletionException(result.getError().get());
+            }
+            return result;
+        });
+    }
+}
@@ -1,6 +1,8 @@
 package dynamic.mapping.connector.mqtt;
 
 import java.nio.ByteBuffer;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 
 import com.hivemq.client.mqtt.datatypes.MqttTopic;
@@ -8,38 +10,92 @@ import com.hivemq.client.mqtt.mqtt3.message.publish.Mqtt3Publish;
 
 import dynamic.mapping.connector.core.callback.ConnectorMessage;
 import dynamic.mapping.connector.core.callback.GenericMessageCallback;
+import lombok.extern.slf4j.Slf4j;
 
+@Slf4j
 public class MQTTCallback implements Consumer<Mqtt3Publish> {
     GenericMessageCallback genericMessageCallback;
     static String TOPIC_LEVEL_SEPARATOR = String.valueOf(MqttTopic.TOPIC_LEVEL_SEPARATOR);
     String tenant;
     String connectorIdent;
     boolean supportsMessageContext;
+    // messages are acknowledged manually when their processing is completed, the
+    // number of unacknowledged messages is limited by the broker
+    boolean manualAcknowledgement;
+    // requests the redelivery of the unacknowledged messages of the connection
+    Consumer<MQTTCallback> redeliveryRequest;
 
     MQTTCallback(GenericMessageCallback callback, String tenant, String connectorIdent,
             boolean supportsMessageContext) {
+        this(callback, tenant, connectorIdent, supportsMessageContext, false, null);
+    }
+
+    MQTTCallback(GenericMessageCallback callback, String tenant, String connectorIdent,
+            boolean supportsMessageContext, boolean manualAcknowledgement,
+            Consumer<MQTTCallback> redeliveryRequest) {
         this.genericMessageCallback = callback;
         this.tenant = tenant;
         this.connectorIdent = connectorIdent;
         this.supportsMessageContext = supportsMessageContext;
+        this.manualAcknowledgement = manualAcknowledgement;
+        this.redeliveryRequest = redeliveryRequest;
     }
 
     @Override
     public void accept(Mqtt3Publish mqttMessage) {
+        accept(mqttMessage.getTopic(), mqttMessage.getPayload(), mqttMessage::acknowledge);
+    }
+
+    // shared by the MQTT 3 and the MQTT 5 client
+    void accept(MqttTopic mqttTopic, Optional<ByteBuffer> payload, Runnable acknowledgement) {
         ConnectorMessage connectorMessage = new ConnectorMessage();
-        if (mqttMessage.getPayload().isPresent()) {
-            ByteBuffer byteBuffer = mqttMessage.getPayload().get();
-            byte[] byteArray = new byte[byteBuffer.remaining()];
-            byteBuffer.get(byteArray);
-            connectorMessage.setPayload(byteArray);
+        if (payload.isPresent()) {
+            // hand over the buffer of the publish without copying it
+            connectorMessage.setPayloadBuffer(payload.get());
         }
         connectorMessage.setTenant(tenant);
         connectorMessage.setSendPayload(true);
-        String topic = String.join(TOPIC_LEVEL_SEPARATOR, mqttMessage.getTopic().getLevels());
+        String topic = String.join(TOPIC_LEVEL_SEPARATOR, mqttTopic.getLevels());
         connectorMessage.setTopic(topic);
         connectorMessage.setConnectorIdent(connectorIdent);
         connectorMessage.setSupportsMessageContext(supportsMessageContext);
-        genericMessageCallback.onMessage(connectorMessage);
+        if (!manualAcknowledgement) {
+            genericMessageCallback.onMessage(connectorMessage);
+            return;
+        }
+        CompletableFuture<?> processing;
+        try {
+            processing = genericMessageCallback.onMessage(connectorMessage);
+        } catch (Exception e) {
+            processing = CompletableFuture.failedFuture(e);
+        }
+        if (processing == null) {
+            // the message is not processed, e.g. a message of the broker on $SYS
+            acknowledge(topic, acknowledgement);
+        } else {
+            processing.whenComplete((result, e) -> {
+                if (GenericMessageCallback.isRedeliveryRequired(result, e)) {
+                    // the broker redelivers the message of the persistent session after a
+                    // reconnect, until then it holds back the acknowledgements of later messages
+                    log.warn("Tenant {} - Message on topic {} not processed, it is not acknowledged: {}", tenant,
+                            topic, e != null ? e.getMessage() : "Cumulocity not reachable");
+                    if (redeliveryRequest != null) {
+                        redeliveryRequest.accept(this);
+                    }
+                } else {
+                    acknowledge(topic, acknowledgement);
+                }
+            });
+        }
+    }
+
+    private void acknowledge(String topic, Runnable acknowledgement) {
+        try {
+            acknowledgement.run();
+        } catch (Exception e) {
+            log.warn("Tenant {} - Could not acknowledge message on topic {}: {}", tenant, topic,
+                    e.getMessage());
+        }
     }
 
 }
\ No newline at end of file
@@ -36,6 +36,16 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.net.ssl.TrustManagerFactory;
 import com.hivemq.client.mqtt.mqtt3.message.unsubscribe.Mqtt3Unsubscribe;
@@ -52,6 +62,8 @@ import dynamic.mapping.processor.model.ProcessingContext;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.mutable.MutableInt;
 
+import com.hivemq.client.mqtt.MqttClientBuilderBase;
+import com.hivemq.client.mqtt.MqttClientConfig;
 import com.hivemq.client.mqtt.MqttClientSslConfig;
 import com.hivemq.client.mqtt.MqttClientSslConfigBuilder;
 import com.hivemq.client.mqtt.MqttGlobalPublishFilter;
@@ -68,13 +80,29 @@ import com.hivemq.client.mqtt.mqtt3.message.publish.Mqtt3Publish;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import dynamic.mapping.configuration.ConnectorConfiguration;
+import dynamic.mapping.configuration.ServiceConfiguration;
 import dynamic.mapping.connector.core.ConnectorProperty;
 import dynamic.mapping.core.ConfigurationRegistry;
 import dynamic.mapping.core.ConnectorStatus;
 
 @Slf4j
 public class MQTTClient extends AConnectorClient {
+    protected static final int DEFAULT_MAX_IN_FLIGHT_PUBLISHES = 100;
+
+    // delay of the reconnect to get messages redelivered, that could not be processed
+    protected static final long REDELIVERY_BACKOFF_MS = 5000;
+
     public MQTTClient() {
+        Map<String, ConnectorProperty> configProps = createConfigProperties();
+        String description = "Generic connector for connecting to external MQTT broker over tcp or websocket.";
+        connectorType = ConnectorType.MQTT;
+        specification = new ConnectorSpecification(description, connectorType, configProps, false);
+    }
+
+    /**
+     * @return the properties shared by the MQTT 3 and the MQTT 5 client
+     */
+    protected static Map<String, ConnectorProperty> createConfigProperties() {
         Map<String, ConnectorProperty> configProps = new HashMap<>();
         configProps.put("protocol",
                 new ConnectorProperty(true, 0, ConnectorPropertyType.OPTION_PROPERTY, false, false, "mqtt://",
@@ -104,9 +132,12 @@ public class MQTTClient extends AConnectorClient {
                 new ConnectorProperty(false, 9, ConnectorPropertyType.BOOLEAN_PROPERTY, false, false, true, null));
         configProps.put("serverPath",
                 new ConnectorProperty(false, 10, ConnectorPropertyType.STRING_PROPERTY, false, false, null, null));
-        String description = "Generic connector for connecting to external MQTT broker over tcp or websocket.";
-        connectorType = ConnectorType.MQTT;
-        specification = new ConnectorSpecification(description, connectorType, configProps, false);
+        configProps.put("maxInFlightPublishes",
+                new ConnectorProperty(false, 11, ConnectorPropertyType.NUMERIC_PROPERTY, false, false,
+                        DEFAULT_MAX_IN_FLIGHT_PUBLISHES, null));
+        configProps.put("atLeastOnceDelivery",
+                new ConnectorProperty(false, 12, ConnectorPropertyType.BOOLEAN_PROPERTY, false, false, false, null));
+        return configProps;
     }
 
     public MQTTClient(ConfigurationRegistry configurationRegistry,
@@ -141,6 +172,17 @@ public class MQTTClient extends AConnectorClient {
 
     protected Mqtt3BlockingClient mqttClient;
 
+    // runs the callback of received messages, so that a saturated worker pool
+    // does not block the event loop of the client until its queue is full
+    protected ExecutorService callbackExecutor;
+
+    // a reconnect to get unacknowledged messages redelivered is scheduled
+    private final AtomicBoolean redeliveryScheduled = new AtomicBoolean();
+
+    // limits the number of outbound publishes waiting for the acknowledgement of
+    // the broker
+    protected Semaphore inFlightPublishes = new Semaphore(DEFAULT_MAX_IN_FLIGHT_PUBLISHES);
+
     @Getter
     protected List<QOS> supportedQOS;
 
@@ -224,6 +266,8 @@ public class MQTTClient extends AConnectorClient {
         String user = (String) connectorConfiguration.getProperties().get("user");
         String password = (String) connectorConfiguration.getProperties().get("password");
         boolean useWSS = (Boolean) connectorConfiguration.getProperties().getOrDefault("useWSS", false);
+        initializePublishWindow();
+        boolean atLeastOnceDelivery = isAtLeastOnceDelivery();
 
         Mqtt3ClientBuilder partialBuilder;
         if (useWSS) {
@@ -245,6 +289,65 @@ public class MQTTClient extends AConnectorClient {
                     .simpleAuth(simpleAuthComplete.build());
         }
 
+        // finally build mqttClient
+        mqttClient = configureBuilder(partialBuilder, protocol, useSelfSignedCertificate).buildBlocking();
+
+        String configuredUrl = getConfiguredUrl(mqttClient.getConfig());
+        // Registering Callback
+        Mqtt3AsyncClient mqtt3AsyncClient = mqttClient.toAsync();
+        mqttCallback = createCallback();
+        mqtt3AsyncClient.publishes(MqttGlobalPublishFilter.ALL, mqttCallback, createCallbackExecutor(),
+                atLeastOnceDelivery);
+
+        // stay in the loop until successful
+        boolean successful = false;
+        while (!successful) {
+            loadConfiguration();
+            connectUntilConnected(configuredUrl, () -> {
+                Mqtt3ConnAck ack = mqttClient.connectWith()
+                        .cleanSession(!atLeastOnceDelivery)
+                        .keepAlive(60)
+                        .send();
+                if (!ack.getReturnCode().equals(Mqtt3ConnAckReturnCode.SUCCESS)) {
+
+                    throw new ConnectorException(
+                            String.format("Tenant %s - Error connecting to broker: %s. Errorcode: %s", tenant,
+                                    mqttClient.getConfig().getServerHost(), ack.getReturnCode().name()));
+                }
+            });
+
+            try {
+                // test if the mqtt connection is configured and enabled
+                if (shouldConnect()) {
+                    try {
+                        // is not working for broker.emqx.io
+                        subscribe("$SYS/#", QOS.AT_LEAST_ONCE);
+                    } catch (ConnectorException e) {
+                        log.warn(
+                                "Tenant {} - Error on subscribing to topic $SYS/#, this might not be supported by the mqtt broker {} {}",
+                                e.getMessage(), e);
+                    }
+
+                }
+                successful = true;
+            } catch (Exception e) {
+                log.error("Tenant {} - Error on reconnect, retrying ... {}: ", tenant, e.getMessage(), e);
+                updateConnectorStatusToFailed(e);
+                sendConnectorLifecycle();
+                if (serviceConfiguration.logConnectorErrorInBackend) {
+                    log.error("Tenant {} - Stacktrace: ", tenant, e);
+                }
+                successful = false;
+            }
+        }
+    }
+
+    /**
+     * Applies the configuration shared by the MQTT 3 and the MQTT 5 client to the
+     * builder: tls, websocket and the listeners of the connection state.
+     */
+    protected <B extends MqttClientBuilderBase<B>> B configureBuilder(B partialBuilder, String protocol,
+            boolean useSelfSignedCertificate) {
         // tls configuration
         if (useSelfSignedCertificate) {
             partialBuilder = partialBuilder.sslConfig(sslConfig);
@@ -262,8 +365,7 @@ public class MQTTClient extends AConnectorClient {
             log.debug("Tenant {} - Using websocket: {}", tenant, serverPath);
         }
 
-        // finally build mqttClient
-        mqttClient = partialBuilder
+        return partialBuilder
                 .addDisconnectedListener(context -> {
                     // test if we closed the connection deliberately, otherwise we have to try to
                     // reconnect
@@ -274,105 +376,158 @@ public class MQTTClient extends AConnectorClient {
                 })
                 .addConnectedListener(connext -> {
                     connectionState.setTrue();
-                })
-                .buildBlocking();
+                });
+    }
 
+    protected String getConfiguredUrl(MqttClientConfig config) {
         String configuredProtocol = "mqtt";
         String configuredServerPath = "";
-        if (mqttClient.getConfig().getWebSocketConfig().isPresent()) {
-            if (mqttClient.getConfig().getSslConfig().isPresent()) {
+        if (config.getWebSocketConfig().isPresent()) {
+            if (config.getSslConfig().isPresent()) {
                 configuredProtocol = "wss";
             } else {
                 configuredProtocol = "ws";
             }
-            configuredServerPath = "/" + mqttClient.getConfig().getWebSocketConfig().get().getServerPath();
+            configuredServerPath = "/" + config.getWebSocketConfig().get().getServerPath();
         } else {
-            if (mqttClient.getConfig().getSslConfig().isPresent()) {
+            if (config.getSslConfig().isPresent()) {
                 configuredProtocol = "mqtts";
             } else {
                 configuredProtocol = "mqtt";
             }
         }
-        String configuredUrl = String.format("%s://%s:%s%s", configuredProtocol, mqttClient.getConfig().getServerHost(),
-                mqttClient.getConfig().getServerPort(), configuredServerPath);
-        // Registering Callback
-        Mqtt3AsyncClient mqtt3AsyncClient = mqttClient.toAsync();
-        mqttCallback = new MQTTCallback(dispatcher, tenant, getConnectorIdent(), false);
-        mqtt3AsyncClient.publishes(MqttGlobalPublishFilter.ALL, mqttCallback);
+        return String.format("%s://%s:%s%s", configuredProtocol, config.getServerHost(),
+                config.getServerPort(), configuredServerPath);
+    }
 
-        // stay in the loop until successful
-        boolean successful = false;
-        while (!successful) {
-            loadConfiguration();
-            var firstRun = true;
-            while (!isConnected() && shouldConnect()) {
-                log.info("Tenant {} - Trying to connect {} - phase II: (shouldConnect):{} {}", tenant,
-                        getConnectorName(),
-                        shouldConnect(), configuredUrl);
-                if (!firstRun) {
+    protected void initializePublishWindow() {
+        Number maxInFlightPublishes = (Number) connectorConfiguration.getProperties()
+                .getOrDefault("maxInFlightPublishes", DEFAULT_MAX_IN_FLIGHT_PUBLISHES);
+        inFlightPublishes = new Semaphore(Math.max(1, maxInFlightPublishes.intValue()));
+    }
+
+    // at-least-once delivery uses a persistent session and acknowledges messages
+    // only when they are processed, the number of unacknowledged messages is
+    // limited by the in-flight window of the broker
+    protected boolean isAtLeastOnceDelivery() {
+        return (Boolean) connectorConfiguration.getProperties().getOrDefault("atLeastOnceDelivery", false);
+    }
+
+    protected MQTTCallback createCallback() {
+        return new MQTTCallback(dispatcher, tenant, getConnectorIdent(), false, isAtLeastOnceDelivery(),
+                this::requestRedelivery);
+    }
+
+    /**
+     * Reconnects the session after a backoff, when a message could not be
+     * processed. Messages are acknowledged in the order they are received, so an
+     * unacknowledged message holds back the acknowledgements of all later messages
+     * and the broker stops sending, when its in-flight window is full. The broker
+     * redelivers the unacknowledged messages of the persistent session after the
+     * reconnect.
+     */
+    protected void requestRedelivery(MQTTCallback callback) {
+        if (!redeliveryScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        log.warn("Tenant {} - Reconnecting to broker {} in {} ms, to get unacknowledged messages redelivered",
+                tenant, getServerHost(), REDELIVERY_BACKOFF_MS);
+        CompletableFuture.delayedExecutor(REDELIVERY_BACKOFF_MS, TimeUnit.MILLISECONDS).execute(() -> {
+            redeliveryScheduled.set(false);
+            // the message was received on a connection, that is already replaced
+            if (callback != mqttCallback || !isBrokerConnected()) {
+                return;
+            }
+            try {
+                // the disconnected listener reconnects, the subscriptions are kept in the session
+                disconnectFromBroker();
+            } catch (Exception e) {
+                log.warn("Tenant {} - Error reconnecting to broker {}: {}", tenant, getServerHost(),
+                        e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Creates the executor for the callback of a new connection. A single thread
+     * keeps the order of the received messages. Its queue has the capacity of the
+     * queue of the worker pool, when it is full the event loop of the client is
+     * blocked, so that the broker stops sending messages.
+     */
+    protected Executor createCallbackExecutor() {
+        shutdownCallbackExecutor();
+        ServiceConfiguration configuration = serviceConfiguration != null ? serviceConfiguration
+                : new ServiceConfiguration();
+        int queueCapacity = Math.max(1, configuration.inboundQueueCapacity);
+        String threadName = "mqtt-callback-" + tenant + "-" + getConnectorIdent();
+        callbackExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, threadName);
+                    thread.setDaemon(true);
+                    return thread;
+                }, (task, executor) -> {
+                    if (executor.isShutdown()) {
+                        throw new RejectedExecutionException("Callback executor is shut down");
+                    }
                     try {
-                        Thread.sleep(WAIT_PERIOD_MS);
+                        executor.getQueue().put(task);
                     } catch (InterruptedException e) {
-                        // ignore errorMessage
-                        // log.error("Tenant {} - Error on reconnect: {}", tenant, e.getMessage());
-                    }
-                }
-                try {
-                    Mqtt3ConnAck ack = mqttClient.connectWith()
-                            .cleanSession(true)
-                            .keepAlive(60)
-                            .send();
-                    if (!ack.getReturnCode().equals(Mqtt3ConnAckReturnCode.SUCCESS)) {
-
-                        throw new ConnectorException(
-                                String.format("Tenant %s - Error connecting to broker: %s. Errorcode: %s", tenant,
-                                        mqttClient.getConfig().getServerHost(), ack.getReturnCode().name()));
+                        Thread.currentThread().interrupt();
+                        throw new RejectedExecutionException("Interrupted while waiting for callback executor", e);
                     }
+                });
+        return callbackExecutor;
+    }
 
-                    connectionState.setTrue();
-                    log.info("Tenant {} - Successfully connected to broker {}", tenant,
-                            mqttClient.getConfig().getServerHost());
-                    updateConnectorStatusAndSend(ConnectorStatus.CONNECTED, true, true);
-                    List<Mapping> updatedMappings = mappingComponent.rebuildMappingInboundCache(tenant);
-                    updateActiveSubscriptions(updatedMappings, true);
-
-                } catch (Exception e) {
-                    log.error("Tenant {} - Failed to connect to broker {}, {}, {}, {}", tenant,
-                            mqttClient.getConfig().getServerHost(), e.getMessage(), connectionState.booleanValue(),
-                            mqttClient.getState().isConnected());
-                    updateConnectorStatusToFailed(e);
-                    sendConnectorLifecycle();
+    protected void shutdownCallbackExecutor() {
+        if (callbackExecutor != null) {
+            // messages already received are still handed over to the dispatcher
+            callbackExecutor.shutdown();
+            callbackExecutor = null;
+        }
+    }
+
+    @FunctionalInterface
+    protected interface ConnectAttempt {
+        // throws an exception, when the broker refused the connection
+        void connect() throws Exception;
+    }
+
+    /**
+     * Tries to connect to the broker until the connection is established or the
+     * connector should no longer connect.
+     */
+    protected void connectUntilConnected(String configuredUrl, ConnectAttempt attempt) {
+        var firstRun = true;
+        while (!isConnected() && shouldConnect()) {
+            log.info("Tenant {} - Trying to connect {} - phase II: (shouldConnect):{} {}", tenant,
+                    getConnectorName(),
+                    shouldConnect(), configuredUrl);
+            if (!firstRun) {
+                try {
+                    Thread.sleep(WAIT_PERIOD_MS);
+                } catch (InterruptedException e) {
+                    // ignore errorMessage
+                    // log.error("Tenant {} - Error on reconnect: {}", tenant, e.getMessage());
                 }
-                firstRun = false;
             }
-
             try {
-                // test if the mqtt connection is configured and enabled
-                if (shouldConnect()) {
-                    try {
-                        // is not working for broker.emqx.io
-                        subscribe("$SYS/#", QOS.AT_LEAST_ONCE);
-                    } catch (ConnectorException e) {
-                        log.warn(
-                                "Tenant {} - Error on subscribing to topic $SYS/#, this might not be supported by the mqtt broker {} {}",
-                                e.getMessage(), e);
-                    }
+                attempt.connect();
+
+                connectionState.setTrue();
+                log.info("Tenant {} - Successfully connected to broker {}", tenant, getServerHost());
+                updateConnectorStatusAndSend(ConnectorStatus.CONNECTED, true, true);
+                List<Mapping> updatedMappings = mappingComponent.getCachedMappingsInbound(tenant);
+                updateActiveSubscriptions(updatedMappings, true);
 
-                    mappingComponent.rebuildMappingOutboundCache(tenant);
-                    // in order to keep MappingInboundCache and ActiveSubscriptionMappingInbound in
-                    // sync, the ActiveSubscriptionMappingInbound is build on the
-                    // previously used updatedMappings
-                }
-                successful = true;
             } catch (Exception e) {
-                log.error("Tenant {} - Error on reconnect, retrying ... {}: ", tenant, e.getMessage(), e);
+                log.error("Tenant {} - Failed to connect to broker {}, {}, {}, {}", tenant,
+                        getServerHost(), e.getMessage(), connectionState.booleanValue(),
+                        isBrokerConnected());
                 updateConnectorStatusToFailed(e);
                 sendConnectorLifecycle();
-                if (serviceConfiguration.logConnectorErrorInBackend) {
-                    log.error("Tenant {} - Stacktrace: ", tenant, e);
-                }
-                successful = false;
             }
+            firstRun = false;
         }
     }
 
@@ -411,39 +566,45 @@ public class MQTTClient extends AConnectorClient {
     public void disconnect() {
         if (isConnected()) {
             updateConnectorStatusAndSend(ConnectorStatus.DISCONNECTING, true, true);
-            log.info("Tenant {} - Disconnecting from broker: {}", tenant,
-                    (mqttClient == null ? (String) connectorConfiguration.getProperties().get("mqttHost")
-                            : mqttClient.getConfig().getServerHost()));
-            log.debug("Tenant {} - Disconnected from broker I: {}", tenant,
-                    mqttClient.getConfig().getServerHost());
+            log.info("Tenant {} - Disconnecting from broker: {}", tenant, getServerHost());
             activeSubscriptions.entrySet().forEach(entry -> {
                 // only unsubscribe if still active subscriptions exist
                 String topic = entry.getKey();
                 MutableInt activeSubs = entry.getValue();
-                if (activeSubs.intValue() > 0 && mqttClient.getState().isConnected()) {
-                    mqttClient.unsubscribe(Mqtt3Unsubscribe.builder().topicFilter(topic).build());
+                if (activeSubs.intValue() > 0 && isBrokerConnected()) {
+                    sendUnsubscribe(topic);
                 }
             });
 
-            if (mqttClient.getState().isConnected()) {
-                mqttClient.unsubscribe(Mqtt3Unsubscribe.builder().topicFilter("$SYS").build());
-            }
-
             try {
-                if (mqttClient != null && mqttClient.getState().isConnected())
-                    mqttClient.disconnect();
+                if (isBrokerConnected())
+                    disconnectFromBroker();
             } catch (Exception e) {
                 log.error("Tenant {} - Error disconnecting from MQTT broker:", tenant,
                         e);
             }
+            shutdownCallbackExecutor();
             updateConnectorStatusAndSend(ConnectorStatus.DISCONNECTED, true, true);
-            List<Mapping> updatedMappings = mappingComponent.rebuildMappingInboundCache(tenant);
+            List<Mapping> updatedMappings = mappingComponent.getCachedMappingsInbound(tenant);
             updateActiveSubscriptions(updatedMappings, true);
-            log.info("Tenant {} - Disconnected from MQTT broker II: {}", tenant,
-                    mqttClient.getConfig().getServerHost());
+            log.info("Tenant {} - Disconnected from MQTT broker II: {}", tenant, getServerHost());
         }
     }
 
+    protected boolean isBrokerConnected() {
+        return mqttClient != null && mqttClient.getState().isConnected();
+    }
+
+    protected String getServerHost() {
+        return mqttClient == null ? (String) connectorConfiguration.getProperties().get("mqttHost")
+                : mqttClient.getConfig().getServerHost();
+    }
+
+    protected void disconnectFromBroker() {
+        mqttClient.unsubscribe(Mqtt3Unsubscribe.builder().topicFilter("$SYS").build());
+        mqttClient.disconnect();
+    }
+
     @Override
     public String getConnectorIdent() {
         return connectorIdent;
@@ -454,7 +615,7 @@ public class MQTTClient extends AConnectorClient {
         log.debug("Tenant {} - Subscribing on topic: {}", tenant, topic);
         QOS usedQOS = qos;
         sendSubscriptionEvents(topic, "Subscribing");
-        if (usedQOS.equals(null))
+        if (usedQOS == null)
             usedQOS = QOS.AT_LEAST_ONCE;
         else if (!supportedQOS.contains(qos)) {
             // determine maximum supported QOS
@@ -470,8 +631,7 @@ public class MQTTClient extends AConnectorClient {
         }
 
         // We don't need to add a handler on subscribe using hive client
-        Mqtt3AsyncClient asyncMqttClient = mqttClient.toAsync();
-        asyncMqttClient.subscribeWith().topicFilter(topic).qos(MqttQos.fromCode(usedQOS.ordinal())).send()
+        sendSubscribe(topic, MqttQos.fromCode(usedQOS.ordinal()))
                 .thenRun(() -> {
                     log.debug("Tenant {} - Successfully subscribed on topic: {}", tenant, topic);
                 }).exceptionally(throwable -> {
@@ -481,22 +641,66 @@ public class MQTTClient extends AConnectorClient {
                 });
     }
 
+    protected CompletableFuture<?> sendSubscribe(String topic, MqttQos qos) {
+        return mqttClient.toAsync().subscribeWith().topicFilter(topic).qos(qos).send();
+    }
+
     public void unsubscribe(String topic) throws Exception {
         log.debug("Tenant {} - Unsubscribing from topic: {}", tenant, topic);
         sendSubscriptionEvents(topic, "Unsubscribing");
+        sendUnsubscribe(topic);
+    }
+
+    protected void sendUnsubscribe(String topic) {
         mqttClient.unsubscribe(Mqtt3Unsubscribe.builder().topicFilter(topic).build());
     }
 
     public void publishMEAO(ProcessingContext<?> context) {
-        C8YRequest currentRequest = context.getCurrentRequest();
-        String payload = currentRequest.getRequest();
+        String payload = context.getCurrentRequest().getRequest();
         MqttQos mqttQos = MqttQos.fromCode(context.getQos().ordinal());
-        Mqtt3Publish mqttMessage = Mqtt3Publish.builder().topic(context.getResolvedPublishTopic()).qos(mqttQos)
-                .payload(payload.getBytes()).build();
-        mqttClient.publish(mqttMessage);
+        Semaphore window = acquirePublishWindow();
+        context.addPendingRequest(sendPublish(context.getResolvedPublishTopic(), mqttQos, payload.getBytes())
+                .whenComplete((result, e) -> completePublish(context, window, e)));
+    }
+
+    /**
+     * Publishes are pipelined, the worker only waits when the maximum number of
+     * publishes is already waiting for an acknowledgement.
+     */
+    protected Semaphore acquirePublishWindow() {
+        Semaphore window = inFlightPublishes;
+        try {
+            window.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to publish outbound message", e);
+        }
+        return window;
+    }
+
+    protected void completePublish(ProcessingContext<?> context, Semaphore window, Throwable e) {
+        window.release();
+        C8YRequest currentRequest = context.getCurrentRequest();
+        Throwable error = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (error != null) {
+            currentRequest.setError(error instanceof Exception ? (Exception) error : new Exception(error));
+            log.error("Tenant {} - Error publishing outbound message for mapping: {} on topic: {}, {}", tenant,
+                    context.getMapping().name, context.getResolvedPublishTopic(), connectorName, error);
+        } else {
+            currentRequest.setResponse(currentRequest.getRequest());
+            log.info("Tenant {} - Published outbound message: {} for mapping: {} on topic: {}, {}", tenant,
+                    currentRequest.getRequest(), context.getMapping().name, context.getResolvedPublishTopic(),
+                    connectorName);
+        }
+    }
 
-        log.info("Tenant {} - Published outbound message: {} for mapping: {} on topic: {}, {}", tenant, payload,
-                context.getMapping().name, context.getResolvedPublishTopic(), connectorName);
+    /**
+     * Sends the publish to the broker. The future completes exceptionally, when
+     * the broker did not accept the message.
+     */
+    protected CompletableFuture<?> sendPublish(String topic, MqttQos qos, byte[] payload) {
+        Mqtt3Publish mqttMessage = Mqtt3Publish.builder().topic(topic).qos(qos).payload(payload).build();
+        return mqttClient.toAsync().publish(mqttMessage);
     }
 
     @Override
@@ -32,6 +32,7 @@ import com.cumulocity.rest.representation.inventory.ManagedObjectRepresentation;
 import lombok.extern.slf4j.Slf4j;
 import dynamic.mapping.configuration.ConnectorConfiguration;
 import dynamic.mapping.configuration.ConnectorConfigurationComponent;
+import dynamic.mapping.connector.mqtt.MQTT5Client;
 import dynamic.mapping.connector.mqtt.MQTTClient;
 import dynamic.mapping.connector.mqtt.MQTTServiceClient;
 
@@ -93,6 +94,11 @@ public class BootstrapService {
             log.error("Tenant {} - Error on cleaning up connector clients", event.getTenant());
         }
 
+        // send measurements still waiting for their bulk request
+        configurationRegistry.getC8yAgent().removeMeasurementBatchSink(tenant);
+        configurationRegistry.getC8yAgent().removeInFlightLimiter(tenant);
+        configurationRegistry.getRequestSpoolComponent().removeSpool(tenant);
+
         // delete configurations
         configurationRegistry.getServiceConfigurations().remove(tenant);
         configurationRegistry.getMappingServiceRepresentations().remove(tenant);
@@ -115,6 +121,8 @@ public class BootstrapService {
         configurationRegistry.getServiceConfigurations().put(tenant, serviceConfiguration);
         configurationRegistry.getC8yAgent().createExtensibleProcessor(tenant);
         configurationRegistry.getC8yAgent().loadProcessorExtensions(tenant);
+        // replay requests spooled before the last shutdown
+        configurationRegistry.getRequestSpoolComponent().recoverSpool(tenant);
 
         MappingServiceRepresentation mappingServiceRepresentation = configurationRegistry.getObjectMapper()
                 .convertValue(mappingServiceMOR,
@@ -122,13 +130,13 @@ public class BootstrapService {
         configurationRegistry.getMappingServiceRepresentations().put(tenant, mappingServiceRepresentation);
         mappingComponent.initializeMappingStatus(tenant, false);
         mappingComponent.initializeMappingCaches(tenant);
-        mappingComponent.rebuildMappingOutboundCache(tenant);
-        mappingComponent.rebuildMappingInboundCache(tenant);
+        mappingComponent.resyncMappings(tenant);
 
         try {
             // TODO Add other clients static property definition here
             connectorRegistry.registerConnector(ConnectorType.MQTT, new MQTTClient().getSpecification());
             connectorRegistry.registerConnector(ConnectorType.MQTT_SERVICE, new MQTTServiceClient().getSpecification());
+            connectorRegistry.registerConnector(ConnectorType.MQTT5, new MQTT5Client().getSpecification());
             connectorRegistry.registerConnector(ConnectorType.KAFKA, new KafkaClient().getSpecification());
             if (serviceConfiguration != null) {
                 List<ConnectorConfiguration> connectorConfigurationList = connectorConfigurationComponent
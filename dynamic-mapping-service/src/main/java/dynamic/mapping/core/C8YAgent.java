@@ -36,6 +36,7 @@ import com.cumulocity.rest.representation.alarm.AlarmRepresentation;
 import com.cumulocity.rest.representation.event.EventRepresentation;
 import com.cumulocity.rest.representation.identity.ExternalIDRepresentation;
 import com.cumulocity.rest.representation.inventory.ManagedObjectRepresentation;
+import com.cumulocity.rest.representation.measurement.MeasurementCollectionRepresentation;
 import com.cumulocity.rest.representation.measurement.MeasurementRepresentation;
 import com.cumulocity.rest.representation.operation.OperationRepresentation;
 import com.cumulocity.sdk.client.Platform;
@@ -47,11 +48,17 @@ import com.cumulocity.sdk.client.inventory.BinariesApi;
 import com.cumulocity.sdk.client.measurement.MeasurementApi;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import dynamic.mapping.App;
+import dynamic.mapping.configuration.RejectionPolicy;
+import dynamic.mapping.configuration.ServiceConfiguration;
 import dynamic.mapping.configuration.TrustedCertificateCollectionRepresentation;
 import dynamic.mapping.configuration.TrustedCertificateRepresentation;
 import dynamic.mapping.connector.core.client.AConnectorClient;
+import dynamic.mapping.core.cache.IdentityCache;
+import dynamic.mapping.core.executor.InFlightLimiter;
+import dynamic.mapping.core.executor.OrderedLanes;
 import dynamic.mapping.core.facade.IdentityFacade;
 import dynamic.mapping.core.facade.InventoryFacade;
+import dynamic.mapping.core.spool.RequestSpoolComponent;
 import dynamic.mapping.model.API;
 import dynamic.mapping.model.Extension;
 import dynamic.mapping.model.ExtensionEntry;
@@ -80,6 +87,15 @@ import java.net.URLClassLoader;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 import static java.util.Map.entry;
 
@@ -101,6 +117,9 @@ public class C8YAgent implements ImportBeanDefinitionRegistrar {
     @Autowired
     private IdentityFacade identityApi;
 
+    @Autowired
+    private IdentityCache identityCache;
+
     @Autowired
     private MeasurementApi measurementApi;
 
@@ -136,6 +155,24 @@ public class C8YAgent implements ImportBeanDefinitionRegistrar {
 
     private JSONParser jsonParser = JSONBase.getJSONParser();
 
+    // batching sinks for measurements per tenant
+    private Map<String, MeasurementBatchSink> measurementBatchSinks = new ConcurrentHashMap<>();
+
+    // bound of concurrent requests to Cumulocity per tenant
+    private Map<String, InFlightLimiter> inFlightLimiters = new ConcurrentHashMap<>();
+
+    // latest requested status per operation, while an update of the operation is in flight
+    private Map<String, OperationStatusUpdate> operationStatusUpdates = new ConcurrentHashMap<>();
+
+    // requests for the same device are sent in the order they are created
+    private OrderedLanes<String> deviceLanes = new OrderedLanes<>();
+
+    private ScheduledExecutorService measurementBatchScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "measurement-batch-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     public static final String MAPPING_FRAGMENT = "d11r_mapping";
 
     public static final String CONNECTOR_FRAGMENT = "d11r_connector";
@@ -159,14 +196,36 @@ public class C8YAgent implements ImportBeanDefinitionRegistrar {
         if (identity.getType() == null) {
             identity.setType("c8y_Serial");
         }
+        // only cache lookups against Cumulocity, not against the mock used for
+        // testing mappings
+        boolean useCache = context == null || context.isSendPayload();
+        if (useCache) {
+            IdentityCache.Lookup lookup = identityCache.get(tenant, identity);
+            if (lookup.found) {
+                return lookup.externalId;
+            }
+        }
+        AtomicBoolean notFound = new AtomicBoolean(false);
         ExternalIDRepresentation result = subscriptionsService.callForTenant(tenant, () -> {
             try {
                 return identityApi.resolveExternalId2GlobalId(identity, context);
             } catch (SDKException e) {
                 log.warn("Tenant {} - External ID {} not found", tenant, identity.getValue());
+                if (e.getHttpStatus() == 404) {
+                    notFound.set(true);
+                }
             }
             return null;
         });
+        // other errors than an unknown external id are not cached
+        if (useCache && (result != null || notFound.get())) {
+            ServiceConfiguration serviceConfiguration = configurationRegistry.getServiceConfigurations().get(tenant);
+            if (serviceConfiguration != null) {
+                long ttl = result != null ? serviceConfiguration.identityCacheTtl
+                        : serviceConfiguration.identityCacheNegativeTtl;
+                identityCache.put(tenant, identity, result, ttl * 1000L, serviceConfiguration.identityCacheSize);
+            }
+        }
         return result;
     }
 
@@ -304,11 +363,75 @@ public class C8YAgent implements ImportBeanDefinitionRegistrar {
 
     public AbstractExtensibleRepresentation createMEAO(ProcessingContext<?> context)
             throws ProcessingException {
-        String tenant = context.getTenant();
-        StringBuffer error = new StringBuffer("");
+        return createMEAO(context, context.getCurrentRequest());
+    }
+
+    /**
+     * Send the current request of the context asynchronously. The request is
+     * captured when calling this method, so further requests can be added to the
+     * context while this one is in flight.
+     * Requests for the same device are sent one after the other. Measurements are
+     * collected in the batch of the tenant instead, when batching is enabled, the
+     * batch keeps their order. The returned future completes when the batch was
+     * sent.
+     * The caller is blocked, while the backlog of requests of the tenant is full.
+     */
+    public CompletableFuture<AbstractExtensibleRepresentation> createMEAOAsync(ProcessingContext<?> context) {
         C8YRequest currentRequest = context.getCurrentRequest();
+        String tenant = context.getTenant();
+        ServiceConfiguration serviceConfiguration = configurationRegistry.getServiceConfigurations().get(tenant);
+        if (context.getMapping().getTargetAPI().equals(API.MEASUREMENT) && serviceConfiguration != null
+                && serviceConfiguration.measurementBatchEnabled) {
+            return admit(tenant, () -> createMeasurementBatched(context, currentRequest, serviceConfiguration));
+        }
+        return admit(tenant, () -> deviceLanes.submit(tenant + "/" + currentRequest.getSource(),
+                () -> getInFlightLimiter(tenant).submit(() -> createMEAO(context, currentRequest))));
+    }
+
+    /**
+     * Submits a request of a device in the order of the other requests of the
+     * device, limited by the requests in flight of the tenant.
+     */
+    public <T> CompletableFuture<T> submitForDevice(String tenant, String source, Callable<T> request) {
+        return deviceLanes.submit(tenant + "/" + source, () -> getInFlightLimiter(tenant).submit(request));
+    }
+
+    private AbstractExtensibleRepresentation createMEAO(ProcessingContext<?> context, C8YRequest currentRequest)
+            throws ProcessingException {
+        String tenant = context.getTenant();
         String payload = currentRequest.getRequest();
+        String source = currentRequest.getSource();
         API targetAPI = context.getMapping().getTargetAPI();
+        RequestSpoolComponent requestSpool = configurationRegistry.getRequestSpoolComponent();
+        // keep the order of the requests of a device, while older requests wait in the spool
+        if (requestSpool.shouldSpool(tenant, source)) {
+            if (requestSpool.spool(tenant, context.getMapping().name, targetAPI, source, payload)) {
+                return null;
+            }
+            throw new ProcessingException("Could not spool request of device " + source + ": " + targetAPI);
+        }
+        try {
+            return sendMEAO(tenant, targetAPI, payload);
+        } catch (ProcessingException e) {
+            if (requestSpool.isEnabled(tenant) && RequestSpoolComponent.isUnavailable(e)) {
+                requestSpool.reportOutage(tenant);
+                if (requestSpool.spool(tenant, context.getMapping().name, targetAPI, source, payload)) {
+                    return null;
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Sends a request to the API of Cumulocity. The cause of the thrown exception
+     * is the <code>SDKException</code>, when the request was rejected by
+     * Cumulocity.
+     */
+    public AbstractExtensibleRepresentation sendMEAO(String tenant, API targetAPI, String payload)
+            throws ProcessingException {
+        StringBuffer error = new StringBuffer("");
+        AtomicReference<SDKException> sdkError = new AtomicReference<>();
         AbstractExtensibleRepresentation result = subscriptionsService.callForTenant(tenant, () -> {
             MicroserviceCredentials contextCredentials = removeAppKeyHeaderFromContext(contextService.getContext());
             return contextService.callWithinContext(contextCredentials, () -> {
@@ -343,20 +466,146 @@ public class C8YAgent implements ImportBeanDefinitionRegistrar {
                 } catch (SDKException s) {
                     log.error("Tenant {} - Could not sent payload to c8y: {} {}: ", tenant, targetAPI, payload, s);
                     error.append("Could not sent payload to c8y: " + targetAPI + "/" + payload + "/" + s);
+                    sdkError.set(s);
                 }
                 return rt;
             });
         });
         if (!error.toString().equals("")) {
-            throw new ProcessingException(error.toString());
+            throw new ProcessingException(error.toString(), sdkError.get());
         }
         return result;
     }
 
+    /**
+     * Adds the measurement to the batch of the tenant without waiting for the
+     * batch to be sent, so the calling worker can continue with the next
+     * message and batches can fill up beyond the number of workers.
+     */
+    private CompletableFuture<AbstractExtensibleRepresentation> createMeasurementBatched(ProcessingContext<?> context,
+            C8YRequest currentRequest, ServiceConfiguration serviceConfiguration) {
+        String tenant = context.getTenant();
+        String payload = currentRequest.getRequest();
+        String source = currentRequest.getSource();
+        String mappingName = context.getMapping().name;
+        RequestSpoolComponent requestSpool = configurationRegistry.getRequestSpoolComponent();
+        // keep the order of the requests of a device, while older requests wait in the spool
+        if (requestSpool.shouldSpool(tenant, source)) {
+            if (requestSpool.spool(tenant, mappingName, API.MEASUREMENT, source, payload)) {
+                return CompletableFuture.completedFuture(null);
+            }
+            return CompletableFuture.failedFuture(new ProcessingException(
+                    "Could not spool request of device " + source + ": " + API.MEASUREMENT));
+        }
+        MeasurementRepresentation measurementRepresentation;
+        try {
+            measurementRepresentation = jsonParser.parse(MeasurementRepresentation.class, payload);
+        } catch (Exception e) {
+            log.error("Tenant {} - Could not map payload: {} {}", tenant, API.MEASUREMENT, payload);
+            return CompletableFuture.failedFuture(
+                    new ProcessingException("Could not map payload: " + API.MEASUREMENT + "/" + payload, e));
+        }
+        MeasurementBatchSink sink = measurementBatchSinks.computeIfAbsent(tenant,
+                t -> new MeasurementBatchSink(t, measurements -> createMeasurementsBulk(t, measurements),
+                        measurementBatchScheduler,
+                        // bulk requests count against the requests in flight of the tenant
+                        send -> getInFlightLimiter(t).submit(Executors.callable(send))));
+        return sink.submit(measurementRepresentation, serviceConfiguration.measurementBatchSize,
+                serviceConfiguration.measurementBatchMaxDelay)
+                .<AbstractExtensibleRepresentation>thenApply(rt -> {
+                    log.info("Tenant {} - New measurement posted in bulk: {}", tenant, rt);
+                    return rt;
+                })
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    if (requestSpool.isEnabled(tenant) && RequestSpoolComponent.isUnavailable(cause)) {
+                        requestSpool.reportOutage(tenant);
+                        if (requestSpool.spool(tenant, mappingName, API.MEASUREMENT, source, payload)) {
+                            return null;
+                        }
+                    }
+                    log.error("Tenant {} - Could not sent payload to c8y: {} {}: ", tenant, API.MEASUREMENT, payload,
+                            cause);
+                    throw new CompletionException(new ProcessingException(
+                            "Could not sent payload to c8y: " + API.MEASUREMENT + "/" + payload + "/" + cause,
+                            cause));
+                });
+    }
+
+    public List<MeasurementRepresentation> createMeasurementsBulk(String tenant,
+            List<MeasurementRepresentation> measurements) {
+        return subscriptionsService.callForTenant(tenant, () -> {
+            MicroserviceCredentials contextCredentials = removeAppKeyHeaderFromContext(contextService.getContext());
+            return contextService.callWithinContext(contextCredentials, () -> {
+                MeasurementCollectionRepresentation collection = new MeasurementCollectionRepresentation();
+                collection.setMeasurements(measurements);
+                log.debug("Tenant {} - Sending bulk of {} measurements", tenant, measurements.size());
+                return measurementApi.createBulk(collection).getMeasurements();
+            });
+        });
+    }
+
+    private InFlightLimiter getInFlightLimiter(String tenant) {
+        ServiceConfiguration serviceConfiguration = configurationRegistry.getServiceConfigurations().get(tenant);
+        int maxInFlight = serviceConfiguration != null ? serviceConfiguration.maxInFlightRequests
+                : ServiceConfiguration.DEFAULT_MAX_IN_FLIGHT_REQUESTS;
+        InFlightLimiter limiter = inFlightLimiters.computeIfAbsent(tenant,
+                t -> new InFlightLimiter(configurationRegistry.getCachedThreadPool(), maxInFlight));
+        // follow changes of the service configuration
+        limiter.setMaxInFlight(maxInFlight);
+        return limiter;
+    }
+
+    /**
+     * Admits an operation of an inbound message to the backlog of requests of the
+     * tenant. When the backlog is full the rejection policy of the inbound worker
+     * pools is applied, <code>SPILL</code> blocks like <code>BLOCK</code>, as
+     * there is no pool to spill requests to.
+     */
+    private <T> CompletableFuture<T> admit(String tenant, Supplier<CompletableFuture<T>> operation) {
+        ServiceConfiguration serviceConfiguration = configurationRegistry.getServiceConfigurations().get(tenant);
+        RejectionPolicy policy = serviceConfiguration != null && serviceConfiguration.inboundRejectionPolicy != null
+                ? serviceConfiguration.inboundRejectionPolicy
+                : RejectionPolicy.BLOCK;
+        return getInFlightLimiter(tenant).admit(policy, operation);
+    }
+
+    /**
+     * Returns true, when the backlog of requests of the tenant is full, so that
+     * connectors can stop consuming messages.
+     */
+    public boolean isSaturated(String tenant) {
+        InFlightLimiter limiter = inFlightLimiters.get(tenant);
+        return limiter != null && limiter.isSaturated();
+    }
+
+    public void removeInFlightLimiter(String tenant) {
+        inFlightLimiters.remove(tenant);
+    }
+
+    public void removeMeasurementBatchSink(String tenant) {
+        MeasurementBatchSink sink = measurementBatchSinks.remove(tenant);
+        if (sink != null) {
+            sink.flush();
+        }
+    }
+
     public ManagedObjectRepresentation upsertDevice(String tenant, ID identity, ProcessingContext<?> context)
             throws ProcessingException {
-        StringBuffer error = new StringBuffer("");
+        return upsertDevice(tenant, identity, context, context.getCurrentRequest());
+    }
+
+    public CompletableFuture<ManagedObjectRepresentation> upsertDeviceAsync(String tenant, ID identity,
+            ProcessingContext<?> context) {
         C8YRequest currentRequest = context.getCurrentRequest();
+        // keep the order of the upserts and the other requests of the device
+        return admit(tenant, () -> deviceLanes.submit(tenant + "/" + currentRequest.getSource(),
+                () -> getInFlightLimiter(tenant).submit(() -> upsertDevice(tenant, identity, context, currentRequest))));
+    }
+
+    private ManagedObjectRepresentation upsertDevice(String tenant, ID identity, ProcessingContext<?> context,
+            C8YRequest currentRequest) throws ProcessingException {
+        StringBuffer error = new StringBuffer("");
         ManagedObjectRepresentation device = subscriptionsService.callForTenant(tenant, () -> {
             MicroserviceCredentials contextCredentials = removeAppKeyHeaderFromContext(contextService.getContext());
             return contextService.callWithinContext(contextCredentials, () -> {
@@ -385,6 +634,8 @@ public class C8YAgent implements ImportBeanDefinitionRegistrar {
                         mor = inventoryApi.create(mor, context);
                         log.info("Tenant {} - New device created: {}", tenant, mor);
                         identityApi.create(mor, identity, context);
+                        // remove the cached unknown external id of the new device
+                        identityCache.invalidate(tenant, identity);
                     } else {
                         // Device exists - update needed
                         mor.setId(extId.getManagedObject().getId());
@@ -577,6 +828,49 @@ public class C8YAgent implements ImportBeanDefinitionRegistrar {
         });
     }
 
+    /**
+     * Update the status of an operation asynchronously. Updates of the same
+     * operation are sent one after the other, when several updates are requested
+     * while one is in flight only the latest status is sent.
+     */
+    public void updateOperationStatusAsync(String tenant, OperationRepresentation op, OperationStatus status,
+            String failureReason) {
+        String key = tenant + "/" + (op.getId() != null ? op.getId().getValue() : System.identityHashCode(op));
+        if (operationStatusUpdates.put(key, new OperationStatusUpdate(status, failureReason)) == null) {
+            sendOperationStatus(tenant, op, key);
+        }
+    }
+
+    private void sendOperationStatus(String tenant, OperationRepresentation op, String key) {
+        AtomicReference<OperationStatusUpdate> sent = new AtomicReference<>();
+        getInFlightLimiter(tenant).submit(() -> {
+            // read the status when the update is started, a status requested while the
+            // update was queued supersedes the older one
+            OperationStatusUpdate update = operationStatusUpdates.get(key);
+            sent.set(update);
+            updateOperationStatus(tenant, op, update.status, update.failureReason);
+            return null;
+        }).whenComplete((result, e) -> {
+            if (e != null) {
+                log.error("Tenant {} - Operation {} could not be updated: ", tenant, key, e);
+            }
+            // a newer status was requested while this one was in flight
+            if (!operationStatusUpdates.remove(key, sent.get())) {
+                sendOperationStatus(tenant, op, key);
+            }
+        });
+    }
+
+    private static class OperationStatusUpdate {
+        private final OperationStatus status;
+        private final String failureReason;
+
+        private OperationStatusUpdate(OperationStatus status, String failureReason) {
+            this.status = status;
+            this.failureReason = failureReason;
+        }
+    }
+
     public ManagedObjectRepresentation initializeMappingServiceObject(String tenant) {
         ExternalIDRepresentation mappingServiceIdRepresentation = resolveExternalId2GlobalId(tenant,
                 new ID(null, MappingServiceRepresentation.AGENT_ID),
@@ -4,9 +4,11 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 
@@ -20,8 +22,15 @@ import dynamic.mapping.configuration.ServiceConfigurationComponent;
 import dynamic.mapping.connector.core.client.AConnectorClient;
 import dynamic.mapping.connector.core.client.ConnectorType;
 import dynamic.mapping.connector.kafka.KafkaClient;
+import dynamic.mapping.connector.mqtt.MQTT5Client;
 import dynamic.mapping.connector.mqtt.MQTTClient;
 import dynamic.mapping.connector.mqtt.MQTTServiceClient;
+import dynamic.mapping.core.cache.ExpressionCache;
+import dynamic.mapping.core.cache.IdentityCache;
+import dynamic.mapping.core.cache.TargetTemplateCache;
+import dynamic.mapping.core.cache.TopicCache;
+import dynamic.mapping.core.executor.WorkerPool;
+import dynamic.mapping.core.spool.RequestSpoolComponent;
 import dynamic.mapping.model.MappingServiceRepresentation;
 import dynamic.mapping.notification.C8YNotificationSubscriber;
 import dynamic.mapping.processor.extension.ExtensibleProcessorInbound;
@@ -60,6 +69,10 @@ public class ConfigurationRegistry {
     @Getter
     private Map<String, ServiceConfiguration> serviceConfigurations = new HashMap<>();
 
+    // structure: <tenant, <connectorIdent, workerPool>>
+    @Getter
+    private Map<String, Map<String, WorkerPool>> workerPools = new ConcurrentHashMap<>();
+
     // structure: <tenant, <extensibleProcessorInbound>>
     @Getter
     private Map<String, ExtensibleProcessorInbound> extensibleProcessors = new HashMap<>();
@@ -113,11 +126,55 @@ public class ConfigurationRegistry {
         this.serviceConfigurationComponent = serviceConfigurationComponent;
     }
 
+    @Getter
+    private ExpressionCache expressionCache;
+
+    @Autowired
+    public void setExpressionCache(ExpressionCache expressionCache) {
+        this.expressionCache = expressionCache;
+    }
+
+    @Getter
+    private TargetTemplateCache targetTemplateCache;
+
+    @Autowired
+    public void setTargetTemplateCache(TargetTemplateCache targetTemplateCache) {
+        this.targetTemplateCache = targetTemplateCache;
+    }
+
+    @Getter
+    private IdentityCache identityCache;
+
+    @Autowired
+    public void setIdentityCache(IdentityCache identityCache) {
+        this.identityCache = identityCache;
+    }
+
+    @Getter
+    private TopicCache topicCache;
+
+    @Autowired
+    public void setTopicCache(TopicCache topicCache) {
+        this.topicCache = topicCache;
+    }
+
+    @Getter
+    private RequestSpoolComponent requestSpoolComponent;
+
+    @Autowired
+    public void setRequestSpoolComponent(@Lazy RequestSpoolComponent requestSpoolComponent) {
+        this.requestSpoolComponent = requestSpoolComponent;
+    }
+
     @Getter
     @Setter
     @Autowired
     private ExecutorService cachedThreadPool;
 
+    @Getter
+    @Value("${APP.virtualThreadsEnabled:false}")
+    private boolean virtualThreadsEnabled;
+
     public Map<MappingType, BasePayloadProcessorInbound<?>> createPayloadProcessorsInbound(String tenant) {
         ExtensibleProcessorInbound extensibleProcessor = getExtensibleProcessors().get(tenant);
         return Map.of(
@@ -143,6 +200,12 @@ public class ConfigurationRegistry {
                     additionalSubscriptionIdTest, tenant);
             log.info("Tenant {} - Initializing MQTTService Connector with ident {}", tenant,
                     connectorConfiguration.getIdent());
+        } else if (ConnectorType.MQTT5.equals(connectorConfiguration.getConnectorType())) {
+            connectorClient = new MQTT5Client(this, connectorConfiguration,
+                    null,
+                    additionalSubscriptionIdTest, tenant);
+            log.info("Tenant {} - Initializing MQTT5 Connector with ident {}", tenant,
+                    connectorConfiguration.getIdent());
         } else if (ConnectorType.KAFKA.equals(connectorConfiguration.getConnectorType())) {
             connectorClient = new KafkaClient(this, connectorConfiguration,
                     null,
@@ -182,6 +245,37 @@ public class ConfigurationRegistry {
         }
     }
 
+    public WorkerPool createWorkerPool(String tenant, String connectorIdent) {
+        ServiceConfiguration serviceConfiguration = serviceConfigurations.get(tenant);
+        if (serviceConfiguration == null) {
+            serviceConfiguration = new ServiceConfiguration();
+        }
+        WorkerPool workerPool = new WorkerPool(tenant, connectorIdent,
+                Math.max(1, serviceConfiguration.inboundWorkerPoolSize),
+                Math.max(1, serviceConfiguration.inboundQueueCapacity),
+                serviceConfiguration.inboundRejectionPolicy, virtualThreadsEnabled);
+        log.info("Tenant {} - Created worker pool for connector {} with {} workers, queue capacity {} and policy {}",
+                tenant, connectorIdent, workerPool.getMaximumPoolSize(),
+                serviceConfiguration.inboundQueueCapacity, serviceConfiguration.inboundRejectionPolicy);
+        WorkerPool previousWorkerPool = workerPools.computeIfAbsent(tenant, t -> new ConcurrentHashMap<>())
+                .put(connectorIdent, workerPool);
+        if (previousWorkerPool != null) {
+            // queued messages are still processed by the previous pool
+            previousWorkerPool.shutdown();
+        }
+        return workerPool;
+    }
+
+    public void removeWorkerPool(String tenant, String connectorIdent) {
+        Map<String, WorkerPool> workerPoolsTenant = workerPools.get(tenant);
+        if (workerPoolsTenant != null) {
+            WorkerPool workerPool = workerPoolsTenant.remove(connectorIdent);
+            if (workerPool != null) {
+                workerPool.shutdown();
+            }
+        }
+    }
+
     public MicroserviceCredentials getMicroserviceCredential(String tenant) {
         MicroserviceCredentials ms = microserviceCredentials.get(tenant);
         return ms;
@@ -27,7 +27,9 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.function.Function;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
@@ -45,13 +47,20 @@ import com.fasterxml.jackson.databind.JsonNode;
 
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import dynamic.mapping.configuration.ServiceConfiguration;
+import dynamic.mapping.core.cache.ExpressionCache;
+import dynamic.mapping.core.cache.TargetTemplateCache;
+import dynamic.mapping.core.cache.TopicCache;
+import dynamic.mapping.core.metrics.MappingLatencyMetrics;
 import dynamic.mapping.model.API;
 import dynamic.mapping.model.Direction;
+import dynamic.mapping.model.MappingSnapshot;
 import dynamic.mapping.model.MappingTreeNode;
 import dynamic.mapping.model.Mapping;
 import dynamic.mapping.model.MappingRepresentation;
 import dynamic.mapping.model.MappingServiceRepresentation;
 import dynamic.mapping.model.MappingStatus;
+import dynamic.mapping.model.MappingStatusCounters;
 import dynamic.mapping.model.ResolveException;
 import dynamic.mapping.model.ValidationError;
 
@@ -60,7 +69,7 @@ import dynamic.mapping.model.ValidationError;
 public class MappingComponent {
 
 	// structure: <tenant, < mappingId , status>>
-	private Map<String, Map<String, MappingStatus>> tenantStatusMapping = new HashMap<>();
+	private Map<String, Map<String, MappingStatusCounters>> tenantStatusMapping = new ConcurrentHashMap<>();
 
 	private Map<String, Set<Mapping>> dirtyMappings = new HashMap<>();
 
@@ -73,6 +82,18 @@ public class MappingComponent {
 	@Autowired
 	private MicroserviceSubscriptionsService subscriptionsService;
 
+	@Autowired
+	private ExpressionCache expressionCache;
+
+	@Autowired
+	private TargetTemplateCache targetTemplateCache;
+
+	@Autowired
+	private TopicCache topicCache;
+
+	@Autowired
+	private MappingLatencyMetrics mappingLatencyMetrics;
+
 	// structure: <tenant, initialized>
 	private Map<String, Boolean> initializedMappingStatus = new HashMap<>();
 
@@ -80,26 +101,50 @@ public class MappingComponent {
 	@Getter
 	private Map<String, Map<String, Map<String, String>>> consolidatedConnectorStatus = new HashMap<>();
 
-	// cache of inbound mappings stored by mapping.id
-	@Getter
-	private Map<String, Map<String, Mapping>> cacheMappingInbound = new HashMap<>();
+	// immutable snapshot of the inbound and outbound mappings with all indexes
+	// used for resolving, the snapshot of a tenant is replaced atomically on every
+	// change
+	// structure: <tenant, snapshot>
+	private Map<String, AtomicReference<MappingSnapshot>> mappingSnapshots = new ConcurrentHashMap<>();
 
-	// cache of outbound mappings stored by mapping.id
-	private Map<String, Map<String, Mapping>> cacheMappingOutbound = new HashMap<>();
+	public void initializeMappingCaches(String tenant) {
+		mappingSnapshots.put(tenant, new AtomicReference<>(MappingSnapshot.empty(tenant)));
+	}
 
-	// cache of outbound mappings stored by mapping.filterOundbound used for
-	// resolving
-	private Map<String, Map<String, List<Mapping>>> resolverMappingOutbound = new HashMap<>();
+	private AtomicReference<MappingSnapshot> getMappingSnapshotReference(String tenant) {
+		return mappingSnapshots.computeIfAbsent(tenant, t -> new AtomicReference<>(MappingSnapshot.empty(t)));
+	}
 
-	// cache of inbound mappings stored in a tree used for resolving
-	@Getter
-	private Map<String, MappingTreeNode> resolverMappingInbound = new HashMap<>();
+	public MappingSnapshot getMappingSnapshot(String tenant) {
+		return getMappingSnapshotReference(tenant).get();
+	}
 
-	public void initializeMappingCaches(String tenant) {
-		cacheMappingInbound.put(tenant, new HashMap<>());
-		cacheMappingOutbound.put(tenant, new HashMap<>());
-		resolverMappingOutbound.put(tenant, new HashMap<>());
-		resolverMappingInbound.put(tenant, MappingTreeNode.createRootNode(tenant));
+	private MappingSnapshot updateMappingSnapshot(String tenant, UnaryOperator<MappingSnapshot> update) {
+		// the update is a pure function of the previous snapshot and can be retried
+		return getMappingSnapshotReference(tenant).updateAndGet(update);
+	}
+
+	/**
+	 * @return all inbound and outbound mappings of the in-memory store. The store
+	 *         is loaded from the inventory at startup or on an explicit resync and
+	 *         updated incrementally afterwards
+	 */
+	public List<Mapping> getCachedMappings(String tenant) {
+		return getMappingSnapshot(tenant).getMappings();
+	}
+
+	public List<Mapping> getCachedMappingsInbound(String tenant) {
+		return new ArrayList<>(getMappingSnapshot(tenant).getInboundMappings().values());
+	}
+
+	// inbound mappings stored by mapping.id
+	public Map<String, Mapping> getCacheMappingInbound(String tenant) {
+		return getMappingSnapshot(tenant).getInboundMappings();
+	}
+
+	// inbound mappings stored in a tree used for monitoring
+	public MappingTreeNode getResolverMappingInbound(String tenant) {
+		return getMappingSnapshot(tenant).getInboundTree();
 	}
 
 	public void initializeMappingStatus(String tenant, boolean reset) {
@@ -111,50 +156,53 @@ public class MappingComponent {
 					(mappingServiceRepresentation.getMappingStatus() == null
 							|| mappingServiceRepresentation.getMappingStatus().size() == 0 ? 0
 									: mappingServiceRepresentation.getMappingStatus().size()));
-			Map<String, MappingStatus> mappingStatus = new HashMap<>();
+			Map<String, MappingStatusCounters> mappingStatus = new ConcurrentHashMap<>();
 			mappingServiceRepresentation.getMappingStatus().forEach(ms -> {
-				mappingStatus.put(ms.ident, ms);
+				mappingStatus.put(ms.ident, new MappingStatusCounters(ms,
+						mappingLatencyMetrics.getTimers(tenant, ms.ident, ms.direction)));
 			});
 			tenantStatusMapping.put(tenant, mappingStatus);
 		} else {
-			tenantStatusMapping.put(tenant, new HashMap<String, MappingStatus>());
-		}
-		if (!tenantStatusMapping.get(tenant).containsKey(MappingStatus.IDENT_UNSPECIFIED_MAPPING)) {
-			tenantStatusMapping.get(tenant).put(MappingStatus.UNSPECIFIED_MAPPING_STATUS.ident,
-					MappingStatus.UNSPECIFIED_MAPPING_STATUS);
+			tenantStatusMapping.put(tenant, new ConcurrentHashMap<String, MappingStatusCounters>());
 		}
+		tenantStatusMapping.get(tenant).computeIfAbsent(MappingStatus.IDENT_UNSPECIFIED_MAPPING,
+				ident -> new MappingStatusCounters(MappingStatus.UNSPECIFIED_MAPPING_STATUS,
+						mappingLatencyMetrics.getTimers(tenant, ident, MappingStatus.UNSPECIFIED_MAPPING_STATUS.direction)));
 		initializedMappingStatus.put(tenant, true);
-		resolverMappingInbound.put(tenant, MappingTreeNode.createRootNode(tenant));
-		if (cacheMappingInbound.get(tenant) == null)
-			cacheMappingInbound.put(tenant, new HashMap<>());
-		if (cacheMappingOutbound.get(tenant) == null)
-			cacheMappingOutbound.put(tenant, new HashMap<>());
+		getMappingSnapshotReference(tenant);
 	}
 
 	public void cleanMappingStatus(String tenant) {
-		resolverMappingInbound.remove(tenant);
+		mappingSnapshots.remove(tenant);
 		tenantStatusMapping.remove(tenant);
+		mappingLatencyMetrics.removeTenant(tenant);
+		expressionCache.evictTenant(tenant);
+		targetTemplateCache.evictTenant(tenant);
+		topicCache.evictTenant(tenant);
+		configurationRegistry.getIdentityCache().evictTenant(tenant);
 	}
 
 	public void sendMappingStatus(String tenant) {
 		if (configurationRegistry.getServiceConfigurations().get(tenant).sendMappingStatus) {
 			subscriptionsService.runForTenant(tenant, () -> {
 				boolean initialized = this.initializedMappingStatus.get(tenant);
-				Map<String, MappingStatus> statusMapping = tenantStatusMapping.get(tenant);
+				Map<String, MappingStatusCounters> statusMapping = tenantStatusMapping.get(tenant);
 				MappingServiceRepresentation mappingServiceRepresentation = configurationRegistry
 						.getMappingServiceRepresentations().get(tenant);
 				// avoid sending empty monitoring events
 				if (statusMapping.values().size() > 0 && mappingServiceRepresentation != null && initialized) {
 					log.debug("Tenant {} - Sending monitoring: {}", tenant, statusMapping.values().size());
 					Map<String, Object> service = new HashMap<String, Object>();
-					MappingStatus[] ms = statusMapping.values().toArray(new MappingStatus[0]);
+					// send a snapshot of the counters, they are updated concurrently
+					MappingStatus[] ms = statusMapping.values().stream().map(MappingStatusCounters::snapshot)
+							.toArray(MappingStatus[]::new);
 					// add current name of mappings to the status messages
+					MappingSnapshot snapshot = getMappingSnapshot(tenant);
 					for (int index = 0; index < ms.length; index++) {
 						ms[index].name = "UNSPECIFIED".equals(ms[index].id) ? "Unspecified" : "Mapping deleted";
-						if (cacheMappingInbound.get(tenant).containsKey(ms[index].id)) {
-							ms[index].name = cacheMappingInbound.get(tenant).get(ms[index].id).name;
-						} else if (cacheMappingOutbound.get(tenant).containsKey(ms[index].id)) {
-							ms[index].name = cacheMappingOutbound.get(tenant).get(ms[index].id).name;
+						Mapping mapping = snapshot.getMapping(ms[index].id);
+						if (mapping != null) {
+							ms[index].name = mapping.name;
 						}
 					}
 					service.put(C8YAgent.MAPPING_FRAGMENT, ms);
@@ -171,22 +219,23 @@ public class MappingComponent {
 		}
 	}
 
-	public MappingStatus getMappingStatus(String tenant, Mapping m) {
+	public MappingStatusCounters getMappingStatus(String tenant, Mapping m) {
 		// log.info("Tenant {} - get MappingStatus: {}", tenant, m.ident);
-		Map<String, MappingStatus> statusMapping = tenantStatusMapping.get(tenant);
-		MappingStatus ms = statusMapping.get(m.ident);
+		Map<String, MappingStatusCounters> statusMapping = tenantStatusMapping.get(tenant);
+		MappingStatusCounters ms = statusMapping.get(m.ident);
 		if (ms == null) {
-			log.info("Tenant {} - Adding: {}", tenant, m.ident);
-			ms = new MappingStatus(m.id, m.name, m.ident, m.direction.name(), m.subscriptionTopic, m.publishTopic, 0, 0,
-					0, 0);
-			statusMapping.put(m.ident, ms);
+			ms = statusMapping.computeIfAbsent(m.ident, ident -> {
+				log.info("Tenant {} - Adding: {}", tenant, ident);
+				return new MappingStatusCounters(m, mappingLatencyMetrics.getTimers(tenant, ident,
+						m.direction == null ? null : m.direction.name()));
+			});
 		}
 		return ms;
 	}
 
 	public List<MappingStatus> getMappingStatus(String tenant) {
-		Map<String, MappingStatus> statusMapping = tenantStatusMapping.get(tenant);
-		return new ArrayList<MappingStatus>(statusMapping.values());
+		Map<String, MappingStatusCounters> statusMapping = tenantStatusMapping.get(tenant);
+		return statusMapping.values().stream().map(MappingStatusCounters::snapshot).collect(Collectors.toList());
 	}
 
 	public void saveMappings(String tenant, List<Mapping> mappings) {
@@ -226,7 +275,7 @@ public class MappingComponent {
 			}
 			// mapping is deactivated and we can delete it
 			inventoryApi.delete(GId.asGId(id));
-			deleteMappingStatus(tenant, id);
+			deleteMappingStatus(tenant, m.getC8yMQTTMapping().ident);
 			return m.getC8yMQTTMapping();
 		});
 		// log.info("Tenant {} - Deleted Mapping: {}", tenant, id);
@@ -261,7 +310,7 @@ public class MappingComponent {
 								tenant, mapping.id));
 			}
 			// mapping is deactivated and we can delete it
-			List<Mapping> mappings = getMappings(tenant);
+			List<Mapping> mappings = getCachedMappings(tenant);
 			List<ValidationError> errors = MappingRepresentation.isMappingValid(mappings, mapping);
 			if (errors.size() == 0 || ignoreValidation) {
 				MappingRepresentation mr = new MappingRepresentation();
@@ -289,7 +338,7 @@ public class MappingComponent {
 	}
 
 	public Mapping createMapping(String tenant, Mapping mapping) {
-		List<Mapping> mappings = getMappings(tenant);
+		List<Mapping> mappings = getCachedMappings(tenant);
 		List<ValidationError> errors = MappingRepresentation.isMappingValid(mappings, mapping);
 		if (errors.size() != 0) {
 			String errorList = errors.stream().map(e -> e.toString()).reduce("",
@@ -327,107 +376,135 @@ public class MappingComponent {
 		return configurationRegistry.getObjectMapper().convertValue(mor, MappingRepresentation.class);
 	}
 
-	private void deleteMappingStatus(String tenant, String id) {
-		tenantStatusMapping.get(tenant).remove(id);
+	private void deleteMappingStatus(String tenant, String ident) {
+		// the status is stored by mapping.ident
+		tenantStatusMapping.get(tenant).remove(ident);
+		mappingLatencyMetrics.removeMapping(tenant, ident);
 	}
 
+	/**
+	 * Add the inbound mapping to the cache, an existing mapping with the same id
+	 * is replaced
+	 */
 	public void addToCacheMappingInbound(String tenant, Mapping mapping) {
-		try {
-			resolverMappingInbound.get(tenant).addMapping(mapping);
-		} catch (ResolveException e) {
-			log.error("Tenant {} - Could not add mapping {}, ignoring mapping", tenant, mapping);
+		if (mapping == null) {
+			return;
 		}
+		expressionCache.compileMapping(tenant, mapping);
+		targetTemplateCache.compileMapping(tenant, mapping);
+		updateMappingSnapshot(tenant, snapshot -> snapshot.withInboundMapping(mapping));
+		topicCache.invalidate(tenant);
 	}
 
 	public void deleteFromCacheMappingInbound(String tenant, Mapping mapping) {
-		try {
-			resolverMappingInbound.get(tenant).deleteMapping(mapping);
-		} catch (ResolveException e) {
-			log.error("Tenant {} - Could not delete mapping {}, ignoring mapping", tenant, mapping);
+		if (mapping == null) {
+			return;
+		}
+		updateMappingSnapshot(tenant, snapshot -> snapshot.withoutInboundMapping(mapping));
+		topicCache.invalidate(tenant);
+		expressionCache.evictMapping(tenant, mapping.id);
+		targetTemplateCache.evictMapping(tenant, mapping.id);
+	}
+
+	/**
+	 * Add the mapping to the cache of its direction, an existing mapping with the
+	 * same id is replaced
+	 */
+	public void addToMappingCache(String tenant, Mapping mapping) {
+		if (Direction.OUTBOUND.equals(mapping.direction)) {
+			addToCacheMappingOutbound(tenant, mapping);
+		} else {
+			addToCacheMappingInbound(tenant, mapping);
 		}
 	}
 
-	public void rebuildMappingOutboundCache(String tenant) {
-		// only add outbound mappings to the cache
-		List<Mapping> updatedMappings = getMappings(tenant).stream()
+	public void addToCacheMappingOutbound(String tenant, Mapping mapping) {
+		expressionCache.compileMapping(tenant, mapping);
+		targetTemplateCache.compileMapping(tenant, mapping);
+		updateMappingSnapshot(tenant, snapshot -> snapshot.withOutboundMapping(mapping));
+	}
+
+	/**
+	 * Reload all mappings from the inventory and replace the in-memory store. This
+	 * is only required at startup or to resync with changes made outside of this
+	 * service, all changes through the service update the store incrementally
+	 * 
+	 * @return the reloaded inbound mappings
+	 */
+	public List<Mapping> resyncMappings(String tenant) {
+		List<Mapping> mappings = getMappings(tenant);
+		rebuildMappingOutboundCache(tenant, mappings.stream()
 				.filter(m -> Direction.OUTBOUND.equals(m.direction))
-				.collect(Collectors.toList());
+				.collect(Collectors.toList()));
+		return rebuildMappingInboundCache(tenant, mappings.stream()
+				.filter(m -> !Direction.OUTBOUND.equals(m.direction))
+				.collect(Collectors.toList()));
+	}
+
+	public void rebuildMappingOutboundCache(String tenant, List<Mapping> updatedMappings) {
 		log.info("Tenant {} - Loaded mappings outbound: {} to cache", tenant, updatedMappings.size());
-		cacheMappingOutbound.replace(tenant, updatedMappings.stream()
-				.collect(Collectors.toMap(Mapping::getId, Function.identity())));
-		resolverMappingOutbound.replace(tenant, updatedMappings.stream()
-				.collect(Collectors.groupingBy(Mapping::getFilterOutbound)));
+		refreshCompiledMappings(tenant, getMappingSnapshot(tenant).getOutboundMappings(), updatedMappings);
+		updateMappingSnapshot(tenant, snapshot -> snapshot.withOutbound(updatedMappings));
 	}
 
 	public List<Mapping> resolveMappingOutbound(String tenant, JsonNode message, API api) throws ResolveException {
 		// use mappingCacheOutbound and the key filterOutbound to identify the matching
 		// mappings.
 		// the need to be returned in a list
-		List<Mapping> result = new ArrayList<>();
-		try {
-			for (Mapping m : cacheMappingOutbound.get(tenant).values()) {
-				// test if message has property associated for this mapping, JsonPointer must
-				// begin with "/"
-				String key = "/" + m.getFilterOutbound().replace('.', '/');
-				JsonNode testNode = message.at(key);
-				if (!testNode.isMissingNode() && m.targetAPI.equals(api)) {
-					log.info("Tenant {} - Found mapping key fragment {} in C8Y message {}", tenant, key,
-							message.get("id"));
-					result.add(m);
-				} else {
-					log.debug("Tenant {} - Not matching mapping key fragment {} in C8Y message {}, {}, {}, {}", tenant,
-							key,
-							m.getFilterOutbound(), message.get("id"), api, message.toPrettyString());
-				}
-			}
-		} catch (IllegalArgumentException e) {
-			throw new ResolveException(e.getMessage());
+		AtomicReference<MappingSnapshot> snapshot = mappingSnapshots.get(tenant);
+		if (snapshot == null) {
+			return new ArrayList<>();
+		}
+		List<Mapping> result = snapshot.get().getOutboundIndex().resolve(message, api);
+		if (result.isEmpty()) {
+			log.debug("Tenant {} - No matching mapping key fragment in C8Y message {}, {}", tenant,
+					message.get("id"), api);
+		}
+		for (Mapping m : result) {
+			log.info("Tenant {} - Found mapping key fragment {} in C8Y message {}", tenant, m.getFilterOutbound(),
+					message.get("id"));
 		}
 		return result;
 	}
 
 	public Mapping deleteFromMappingCache(String tenant, Mapping mapping) {
 		if (Direction.OUTBOUND.equals(mapping.direction)) {
-			Mapping deletedMapping = cacheMappingOutbound.get(tenant).remove(mapping.id);
-			log.info("Tenant {} - Preparing to delete {} {}", tenant, resolverMappingOutbound.get(tenant),
-					mapping.filterOutbound);
-
-			List<Mapping> cmo = resolverMappingOutbound.get(tenant).get(mapping.filterOutbound);
-			cmo.removeIf(m -> mapping.id.equals(m.id));
+			Mapping deletedMapping = getMappingSnapshot(tenant).getOutboundMappings().get(mapping.id);
+			log.info("Tenant {} - Preparing to delete {} {}", tenant, mapping.id, mapping.filterOutbound);
+			updateMappingSnapshot(tenant, snapshot -> snapshot.withoutOutboundMapping(mapping));
+			expressionCache.evictMapping(tenant, mapping.id);
+			targetTemplateCache.evictMapping(tenant, mapping.id);
 			return deletedMapping;
 		} else {
-			Mapping deletedMapping = cacheMappingInbound.get(tenant).remove(mapping.id);
+			Mapping deletedMapping = getMappingSnapshot(tenant).getInboundMappings().get(mapping.id);
 			deleteFromCacheMappingInbound(tenant, deletedMapping);
 			return deletedMapping;
 		}
 	}
 
-	public MappingTreeNode rebuildMappingTree(List<Mapping> mappings, String tenant) {
-		MappingTreeNode in = MappingTreeNode.createRootNode(tenant);
-		mappings.forEach(m -> {
-			try {
-				in.addMapping(m);
-			} catch (ResolveException e) {
-				log.error("Tenant {} - Could not add mapping {}, ignoring mapping", tenant, m);
-			}
-		});
-		return in;
-	}
-
 	public List<Mapping> rebuildMappingInboundCache(String tenant, List<Mapping> updatedMappings) {
 		log.info("Tenant {} - Loaded mappings inbound: {} to cache", tenant, updatedMappings.size());
-		cacheMappingInbound.replace(tenant, updatedMappings.stream()
-				.collect(Collectors.toMap(Mapping::getId, Function.identity())));
-		// update mappings tree
-		resolverMappingInbound.replace(tenant, rebuildMappingTree(updatedMappings, tenant));
+		refreshCompiledMappings(tenant, getMappingSnapshot(tenant).getInboundMappings(), updatedMappings);
+		// update mappings tree and trie in one step
+		updateMappingSnapshot(tenant, snapshot -> snapshot.withInbound(updatedMappings));
+		topicCache.invalidate(tenant);
 		return updatedMappings;
 	}
 
-	public List<Mapping> rebuildMappingInboundCache(String tenant) {
-		List<Mapping> updatedMappings = getMappings(tenant).stream()
-				.filter(m -> !Direction.OUTBOUND.equals(m.direction))
-				.collect(Collectors.toList());
-		return rebuildMappingInboundCache(tenant, updatedMappings);
+	private void refreshCompiledMappings(String tenant, Map<String, Mapping> previousMappings,
+			List<Mapping> updatedMappings) {
+		// evict compiled expressions and templates of the replaced mappings and
+		// compile the updated mappings
+		if (previousMappings != null) {
+			previousMappings.keySet().forEach(id -> {
+				expressionCache.evictMapping(tenant, id);
+				targetTemplateCache.evictMapping(tenant, id);
+			});
+		}
+		updatedMappings.forEach(m -> {
+			expressionCache.compileMapping(tenant, m);
+			targetTemplateCache.compileMapping(tenant, m);
+		});
 	}
 
 	public Mapping setActivationMapping(String tenant, String mappingId, Boolean active) throws Exception {
@@ -437,7 +514,7 @@ public class MappingComponent {
 		mapping.setActive(active);
 		if (Direction.INBOUND.equals(mapping.direction)) {
 			// step 2. retrieve collected snoopedTemplates
-			mapping.setSnoopedTemplates(cacheMappingInbound.get(tenant).get(mappingId).getSnoopedTemplates());
+			mapping.setSnoopedTemplates(getCacheMappingInbound(tenant).get(mappingId).getSnoopedTemplates());
 		}
 		// step 3. update mapping in inventory
 		// don't validate mapping when setting active = false, this allows to remove
@@ -447,13 +524,7 @@ public class MappingComponent {
 		// step 4. delete mapping from update cache
 		removeDirtyMapping(tenant, mapping);
 		// step 5. update caches
-		if (Direction.OUTBOUND.equals(mapping.direction)) {
-			rebuildMappingOutboundCache(tenant);
-		} else {
-			deleteFromCacheMappingInbound(tenant, mapping);
-			addToCacheMappingInbound(tenant, mapping);
-			cacheMappingInbound.get(tenant).put(mapping.id, mapping);
-		}
+		addToMappingCache(tenant, mapping);
 		return mapping;
 	}
 
@@ -464,7 +535,7 @@ public class MappingComponent {
 		mapping.setDebug(debug);
 		if (Direction.INBOUND.equals(mapping.direction)) {
 			// step 2. retrieve collected snoopedTemplates
-			mapping.setSnoopedTemplates(cacheMappingInbound.get(tenant).get(id).getSnoopedTemplates());
+			mapping.setSnoopedTemplates(getCacheMappingInbound(tenant).get(id).getSnoopedTemplates());
 		}
 		// step 3. update mapping in inventory
 		// don't validate mapping when setting active = false, this allows to remove
@@ -473,13 +544,7 @@ public class MappingComponent {
 		// step 4. delete mapping from update cache
 		removeDirtyMapping(tenant, mapping);
 		// step 5. update caches
-		if (Direction.OUTBOUND.equals(mapping.direction)) {
-			rebuildMappingOutboundCache(tenant);
-		} else {
-			deleteFromCacheMappingInbound(tenant, mapping);
-			addToCacheMappingInbound(tenant, mapping);
-			cacheMappingInbound.get(tenant).put(mapping.id, mapping);
-		}
+		addToMappingCache(tenant, mapping);
 	}
 
 	public void cleanDirtyMappings(String tenant) throws Exception {
@@ -510,10 +575,21 @@ public class MappingComponent {
 	}
 
 	public List<Mapping> resolveMappingInbound(String tenant, String topic) throws ResolveException {
-		List<MappingTreeNode> resolvedMappings = getResolverMappingInbound().get(tenant)
-				.resolveTopicPath(Mapping.splitTopicIncludingSeparatorAsList(topic));
-		return resolvedMappings.stream().filter(tn -> tn.isMappingNode())
-				.map(mn -> mn.getMapping()).collect(Collectors.toList());
+		List<Mapping> cachedMappings = topicCache.get(tenant, topic);
+		if (cachedMappings != null) {
+			return cachedMappings;
+		}
+		long generation = topicCache.getGeneration(tenant);
+		AtomicReference<MappingSnapshot> snapshot = mappingSnapshots.get(tenant);
+		if (snapshot == null) {
+			throw new ResolveException(String.format("No inbound mappings loaded for tenant: %s!", tenant));
+		}
+		List<Mapping> mappings = snapshot.get().getInboundTrie().resolve(topic);
+		ServiceConfiguration serviceConfiguration = configurationRegistry.getServiceConfigurations().get(tenant);
+		int topicCacheSize = serviceConfiguration != null ? serviceConfiguration.topicCacheSize
+				: ServiceConfiguration.DEFAULT_TOPIC_CACHE_SIZE;
+		topicCache.put(tenant, topic, mappings, generation, topicCacheSize);
+		return mappings;
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2022 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @authors Christof Strack, Stefan Witschel
+ */
+
+package dynamic.mapping.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import com.cumulocity.rest.representation.measurement.MeasurementRepresentation;
+
+import dynamic.mapping.processor.ProcessingException;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * MeasurementBatchSink
+ * 
+ * Collects the measurements created by the mappings of a tenant and sends them
+ * in one bulk request to Cumulocity. A batch is sent when it reaches the
+ * configured size or when the oldest measurement waited for the configured
+ * delay, whatever happens first.
+ * Every submitted measurement gets a future, that is completed with the created
+ * measurement of the bulk response or with the error of the bulk request, so
+ * the result can be reported in the <code>C8YRequest</code> of the measurement.
+ * A bulk response, that does not contain one measurement for every sent
+ * measurement, is an error of all measurements of the batch.
+ */
+@Slf4j
+public class MeasurementBatchSink {
+
+    private final String tenant;
+
+    // sends a bulk request and returns the created measurements in the same order
+    private final Function<List<MeasurementRepresentation>, List<MeasurementRepresentation>> bulkSender;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final Executor flushExecutor;
+
+    private List<PendingMeasurement> pending = new ArrayList<>();
+
+    private ScheduledFuture<?> flushTask;
+
+    private static class PendingMeasurement {
+        private final MeasurementRepresentation measurement;
+        private final CompletableFuture<MeasurementRepresentation> result = new CompletableFuture<>();
+
+        private PendingMeasurement(MeasurementRepresentation measurement) {
+            this.measurement = measurement;
+        }
+    }
+
+    public MeasurementBatchSink(String tenant,
+            Function<List<MeasurementRepresentation>, List<MeasurementRepresentation>> bulkSender,
+            ScheduledExecutorService scheduler, Executor flushExecutor) {
+        this.tenant = tenant;
+        this.bulkSender = bulkSender;
+        this.scheduler = scheduler;
+        this.flushExecutor = flushExecutor;
+    }
+
+    public CompletableFuture<MeasurementRepresentation> submit(MeasurementRepresentation measurement, int batchSize,
+            long maxDelay) {
+        PendingMeasurement pendingMeasurement = new PendingMeasurement(measurement);
+        List<PendingMeasurement> batch = null;
+        synchronized (this) {
+            pending.add(pendingMeasurement);
+            if (pending.size() >= batchSize) {
+                batch = takeBatch();
+            } else if (flushTask == null) {
+                flushTask = scheduler.schedule(this::flushScheduled, maxDelay, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (batch != null) {
+            // the batch is full, send it without blocking the thread that completed it
+            List<PendingMeasurement> fullBatch = batch;
+            flushExecutor.execute(() -> send(fullBatch));
+        }
+        return pendingMeasurement.result;
+    }
+
+    private synchronized List<PendingMeasurement> takeBatch() {
+        List<PendingMeasurement> batch = pending;
+        pending = new ArrayList<>();
+        if (flushTask != null) {
+            flushTask.cancel(false);
+            flushTask = null;
+        }
+        return batch;
+    }
+
+    private void flushScheduled() {
+        List<PendingMeasurement> batch = takeBatch();
+        if (!batch.isEmpty()) {
+            flushExecutor.execute(() -> send(batch));
+        }
+    }
+
+    /**
+     * Send all pending measurements, e.g. before the sink is discarded
+     */
+    public void flush() {
+        List<PendingMeasurement> batch = takeBatch();
+        if (!batch.isEmpty()) {
+            send(batch);
+        }
+    }
+
+    private void send(List<PendingMeasurement> batch) {
+        List<MeasurementRepresentation> measurements = batch.stream().map(p -> p.measurement)
+                .collect(Collectors.toList());
+        try {
+            List<MeasurementRepresentation> created = bulkSender.apply(measurements);
+            if (created == null || created.size() != batch.size()) {
+                // the created measurements can not be assigned to the sent measurements
+                String message = String.format("Bulk response contains %d measurements for %d sent measurements",
+                        created == null ? 0 : created.size(), batch.size());
+                log.error("Tenant {} - {}", tenant, message);
+                ProcessingException error = new ProcessingException(message);
+                batch.forEach(p -> p.result.completeExceptionally(error));
+                return;
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result.complete(created.get(i));
+            }
+        } catch (Exception e) {
+            log.error("Tenant {} - Could not send bulk of {} measurements: {}", tenant, batch.size(),
+                    e.getMessage());
+            batch.forEach(p -> p.result.completeExceptionally(e));
+        }
+    }
+}
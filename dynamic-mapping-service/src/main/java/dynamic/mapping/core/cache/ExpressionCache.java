@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2022 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @authors Christof Strack, Stefan Witschel
+ */
+
+package dynamic.mapping.core.cache;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.api.jsonata4java.expressions.EvaluateException;
+import com.api.jsonata4java.expressions.Expressions;
+import com.api.jsonata4java.expressions.ParseException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dynamic.mapping.model.CacheStatus;
+import dynamic.mapping.model.Direction;
+import dynamic.mapping.model.Mapping;
+import dynamic.mapping.model.MappingSubstitution;
+import dynamic.mapping.processor.model.MappingType;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * ExpressionCache
+ * 
+ * Holds the compiled JSONata <code>Expressions</code> of the substitutions of
+ * all loaded mappings, so that the <code>pathSource</code> of a substitution is
+ * parsed once when the mapping is loaded and not for every message.
+ * The expressions are compiled when a mapping is added to the mapping caches of
+ * the <code>MappingComponent</code> and evicted when the mapping is updated or
+ * deleted.
+ * Expressions that are requested but not yet compiled are compiled on demand
+ * and counted as a miss.
+ * An <code>Expressions</code> instance keeps the state of the running
+ * evaluation in its visitor and frame environment, so it must not be evaluated
+ * concurrently. Every expression is kept in a small pool of parsed instances
+ * instead, a thread borrows an instance for one evaluation. Further instances
+ * are parsed when all pooled instances are in use.
+ * For inbound JSON mappings that only use simple paths a
+ * <code>StreamingPathExtractor</code> is compiled as well, so that only the
+ * referenced fields have to be read from the payload.
+ */
+@Slf4j
+@Component
+public class ExpressionCache {
+
+    public static final String CACHE_NAME = "expression";
+
+    // maximum number of idle instances kept per expression
+    private static final int MAX_POOLED_INSTANCES = 16;
+
+    // structure: <tenant, expressionCacheForTenant>
+    private Map<String, TenantExpressionCache> tenantCaches = new ConcurrentHashMap<>();
+
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    public void setObjectMapper(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    private static class ExpressionPool {
+        private final String pathSource;
+        private final Queue<Expressions> idle = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger idleCount = new AtomicInteger();
+
+        private ExpressionPool(String pathSource, Expressions expression) {
+            this.pathSource = pathSource;
+            release(expression);
+        }
+
+        private Expressions borrow() throws ParseException, IOException {
+            Expressions expression = idle.poll();
+            if (expression == null) {
+                return Expressions.parse(pathSource);
+            }
+            idleCount.decrementAndGet();
+            return expression;
+        }
+
+        private void release(Expressions expression) {
+            if (idleCount.incrementAndGet() <= MAX_POOLED_INSTANCES) {
+                idle.offer(expression);
+            } else {
+                idleCount.decrementAndGet();
+            }
+        }
+    }
+
+    private static class TenantExpressionCache {
+        // structure: <mappingId, <pathSource, expressionPool>>
+        private final Map<String, Map<String, ExpressionPool>> expressions = new ConcurrentHashMap<>();
+        // structure: <mappingId, extractor>, only for mappings with simple paths
+        private final Map<String, StreamingPathExtractor> extractors = new ConcurrentHashMap<>();
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+    }
+
+    private TenantExpressionCache getTenantCache(String tenant) {
+        return tenantCaches.computeIfAbsent(tenant, t -> new TenantExpressionCache());
+    }
+
+    public void compileMapping(String tenant, Mapping mapping) {
+        if (mapping == null || mapping.id == null || mapping.substitutions == null) {
+            return;
+        }
+        Map<String, ExpressionPool> compiled = new ConcurrentHashMap<>();
+        for (MappingSubstitution substitution : mapping.substitutions) {
+            if (substitution.pathSource == null || compiled.containsKey(substitution.pathSource)) {
+                continue;
+            }
+            try {
+                compiled.put(substitution.pathSource,
+                        new ExpressionPool(substitution.pathSource, Expressions.parse(substitution.pathSource)));
+            } catch (ParseException | IOException | RuntimeException e) {
+                // the expression is parsed again during processing to report the error for
+                // the message
+                log.warn("Tenant {} - Could not compile expression {} of mapping {}: {}", tenant,
+                        substitution.pathSource, mapping.id, e.getMessage());
+            }
+        }
+        TenantExpressionCache cache = getTenantCache(tenant);
+        cache.expressions.put(mapping.id, compiled);
+        StreamingPathExtractor extractor = null;
+        if (Direction.INBOUND.equals(mapping.direction) && MappingType.JSON.equals(mapping.mappingType)) {
+            extractor = StreamingPathExtractor.compile(mapping.substitutions.stream()
+                    .map(substitution -> substitution.pathSource)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList()), objectMapper);
+        }
+        if (extractor != null) {
+            cache.extractors.put(mapping.id, extractor);
+        } else {
+            cache.extractors.remove(mapping.id);
+        }
+        log.debug("Tenant {} - Compiled {} expressions for mapping {}", tenant, compiled.size(), mapping.id);
+    }
+
+    private ExpressionPool getExpressionPool(String tenant, Mapping mapping, String pathSource)
+            throws ParseException, IOException {
+        TenantExpressionCache cache = getTenantCache(tenant);
+        if (mapping.id == null) {
+            cache.misses.increment();
+            return new ExpressionPool(pathSource, Expressions.parse(pathSource));
+        }
+        Map<String, ExpressionPool> compiled = cache.expressions.computeIfAbsent(mapping.id,
+                id -> new ConcurrentHashMap<>());
+        ExpressionPool pool = compiled.get(pathSource);
+        if (pool != null) {
+            cache.hits.increment();
+        } else {
+            cache.misses.increment();
+            pool = new ExpressionPool(pathSource, Expressions.parse(pathSource));
+            compiled.put(pathSource, pool);
+        }
+        return pool;
+    }
+
+    /**
+     * @return the streaming extractor of the mapping, or <code>null</code> if the
+     *         mapping uses expressions that require the complete payload
+     */
+    public StreamingPathExtractor getStreamingExtractor(String tenant, Mapping mapping) {
+        TenantExpressionCache cache = tenantCaches.get(tenant);
+        if (cache == null || mapping.id == null) {
+            return null;
+        }
+        return cache.extractors.get(mapping.id);
+    }
+
+    public JsonNode evaluate(String tenant, Mapping mapping, String pathSource, JsonNode payload)
+            throws ParseException, IOException, EvaluateException {
+        ExpressionPool pool = getExpressionPool(tenant, mapping, pathSource);
+        Expressions expression = pool.borrow();
+        try {
+            return expression.evaluate(payload);
+        } finally {
+            pool.release(expression);
+        }
+    }
+
+    public void evictMapping(String tenant, String mappingId) {
+        TenantExpressionCache cache = tenantCaches.get(tenant);
+        if (cache != null && mappingId != null) {
+            cache.expressions.remove(mappingId);
+            cache.extractors.remove(mappingId);
+        }
+    }
+
+    public void evictTenant(String tenant) {
+        tenantCaches.remove(tenant);
+    }
+
+    public CacheStatus getCacheStatus(String tenant) {
+        TenantExpressionCache cache = getTenantCache(tenant);
+        long size = cache.expressions.values().stream().mapToLong(Map::size).sum();
+        return new CacheStatus(CACHE_NAME, size, cache.hits.sum(), cache.misses.sum());
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2022 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @authors Christof Strack, Stefan Witschel
+ */
+
+package dynamic.mapping.core.cache;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.stereotype.Component;
+
+import com.cumulocity.model.ID;
+import com.cumulocity.rest.representation.identity.ExternalIDRepresentation;
+
+import dynamic.mapping.model.CacheStatus;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * IdentityCache
+ * 
+ * Bounded cache per tenant for the resolution of an external id to the global
+ * id of a device. External ids that are not known to Cumulocity are cached as
+ * well (negative caching), so that unknown devices do not cause a request for
+ * every message. Entries expire after their time to live, when the cache is
+ * full an arbitrary entry is evicted.
+ */
+@Slf4j
+@Component
+public class IdentityCache {
+
+    public static final String CACHE_NAME = "identity";
+
+    // structure: <tenant, identityCacheForTenant>
+    private Map<String, TenantIdentityCache> tenantCaches = new ConcurrentHashMap<>();
+
+    private static class TenantIdentityCache {
+        // structure: <externalIdType/externalId, entry>
+        private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+    }
+
+    private static class Entry {
+        // null for external ids that do not exist
+        private final ExternalIDRepresentation externalId;
+        private final long expiresAt;
+
+        private Entry(ExternalIDRepresentation externalId, long expiresAt) {
+            this.externalId = externalId;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Result of a lookup, distinguishes a cached unknown external id from an
+     * external id that is not cached
+     */
+    public static class Lookup {
+        public static final Lookup MISS = new Lookup(false, null);
+
+        public final boolean found;
+        public final ExternalIDRepresentation externalId;
+
+        private Lookup(boolean found, ExternalIDRepresentation externalId) {
+            this.found = found;
+            this.externalId = externalId;
+        }
+    }
+
+    private TenantIdentityCache getTenantCache(String tenant) {
+        return tenantCaches.computeIfAbsent(tenant, t -> new TenantIdentityCache());
+    }
+
+    private static String key(ID identity) {
+        return identity.getType() + "/" + identity.getValue();
+    }
+
+    public Lookup get(String tenant, ID identity) {
+        TenantIdentityCache cache = getTenantCache(tenant);
+        String key = key(identity);
+        Entry entry = cache.entries.get(key);
+        if (entry != null && entry.expiresAt > System.currentTimeMillis()) {
+            cache.hits.increment();
+            return new Lookup(true, entry.externalId);
+        }
+        if (entry != null) {
+            cache.entries.remove(key, entry);
+        }
+        cache.misses.increment();
+        return Lookup.MISS;
+    }
+
+    /**
+     * Cache the resolved external id, <code>null</code> caches that the external
+     * id does not exist
+     */
+    public void put(String tenant, ID identity, ExternalIDRepresentation externalId, long ttlMillis, int maxSize) {
+        if (maxSize <= 0 || ttlMillis <= 0) {
+            return;
+        }
+        TenantIdentityCache cache = getTenantCache(tenant);
+        if (cache.entries.size() >= maxSize) {
+            Iterator<Entry> iterator = cache.entries.values().iterator();
+            if (iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+        cache.entries.put(key(identity), new Entry(externalId, System.currentTimeMillis() + ttlMillis));
+    }
+
+    public void invalidate(String tenant, ID identity) {
+        TenantIdentityCache cache = tenantCaches.get(tenant);
+        if (cache != null) {
+            cache.entries.remove(key(identity));
+            log.debug("Tenant {} - Invalidated cached external id {}", tenant, key(identity));
+        }
+    }
+
+    public void evictTenant(String tenant) {
+        tenantCaches.remove(tenant);
+    }
+
+    public CacheStatus getCacheStatus(String tenant) {
+        TenantIdentityCache cache = getTenantCache(tenant);
+        return new CacheStatus(CACHE_NAME, cache.entries.size(), cache.hits.sum(), cache.misses.sum());
+    }
+}
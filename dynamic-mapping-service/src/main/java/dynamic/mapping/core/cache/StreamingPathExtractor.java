@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2022 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @authors Christof Strack, Stefan Witschel
+ */
+
+package dynamic.mapping.core.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import dynamic.mapping.model.Mapping;
+
+/**
+ * StreamingPathExtractor
+ * 
+ * Reads only the fields referenced by the substitutions of a mapping from a
+ * JSON payload using the streaming <code>JsonParser</code>, instead of building
+ * the <code>JsonNode</code> tree of the complete payload.
+ * The result is a pruned tree that contains the referenced fields at their
+ * original position, so the JSONata expressions of the substitutions evaluate
+ * to the same result as on the complete payload.
+ * An extractor can only be compiled when all <code>pathSource</code> are simple
+ * paths, i.e. field names separated by dots like <code>sensor.value</code>. For
+ * all other expressions <code>compile</code> returns <code>null</code> and the
+ * complete payload has to be parsed.
+ */
+public class StreamingPathExtractor {
+
+    private static final Pattern SIMPLE_PATH = Pattern
+            .compile("[A-Za-z_][A-Za-z0-9_]*(\\.[A-Za-z_][A-Za-z0-9_]*)*");
+
+    // names that are interpreted as literals or operators by JSONata
+    private static final Set<String> RESERVED = Set.of("true", "false", "null", "and", "or", "in");
+
+    private final PathNode root;
+    private final JsonFactory jsonFactory;
+    private final JsonNodeFactory nodeFactory;
+
+    private static class PathNode {
+        private final Map<String, PathNode> children = new HashMap<>();
+        // the complete value of this node is referenced
+        private boolean leaf;
+    }
+
+    private StreamingPathExtractor(PathNode root, ObjectMapper objectMapper) {
+        this.root = root;
+        this.jsonFactory = objectMapper.getFactory();
+        this.nodeFactory = objectMapper.getNodeFactory();
+    }
+
+    public static boolean isSimplePath(String pathSource) {
+        if (pathSource == null || !SIMPLE_PATH.matcher(pathSource).matches()) {
+            return false;
+        }
+        for (String segment : pathSource.split("\\.")) {
+            if (RESERVED.contains(segment)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the extractor for the paths, or <code>null</code> if one of the
+     *         paths is not a simple path
+     */
+    public static StreamingPathExtractor compile(Collection<String> pathSources, ObjectMapper objectMapper) {
+        PathNode root = new PathNode();
+        for (String pathSource : pathSources) {
+            // the topic levels and the context data are added to the payload after it
+            // is deserialized
+            if (pathSource != null && (pathSource.startsWith(Mapping.TOKEN_TOPIC_LEVEL)
+                    || pathSource.startsWith(Mapping.TOKEN_CONTEXT_DATA))) {
+                continue;
+            }
+            if (!isSimplePath(pathSource)) {
+                return null;
+            }
+            PathNode node = root;
+            for (String segment : pathSource.split("\\.")) {
+                node = node.children.computeIfAbsent(segment, s -> new PathNode());
+            }
+            node.leaf = true;
+        }
+        return new StreamingPathExtractor(root, objectMapper);
+    }
+
+    public JsonNode extract(byte[] payload) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(payload)) {
+            return extract(parser);
+        }
+    }
+
+    public JsonNode extract(InputStream payload) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(payload)) {
+            return extract(parser);
+        }
+    }
+
+    private JsonNode extract(JsonParser parser) throws IOException {
+        if (parser.nextToken() == null) {
+            return null;
+        }
+        JsonNode result = readValue(parser, root);
+        return result != null ? result : nodeFactory.objectNode();
+    }
+
+    // the parser is positioned on the first token of the value
+    private JsonNode readValue(JsonParser parser, PathNode node) throws IOException {
+        if (node.leaf) {
+            return parser.readValueAsTree();
+        }
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_OBJECT) {
+            ObjectNode object = nodeFactory.objectNode();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                PathNode child = node.children.get(name);
+                parser.nextToken();
+                if (child == null) {
+                    parser.skipChildren();
+                } else {
+                    JsonNode value = readValue(parser, child);
+                    if (value != null) {
+                        object.set(name, value);
+                    }
+                }
+            }
+            return object;
+        } else if (token == JsonToken.START_ARRAY) {
+            // JSONata applies a path to every element of an array
+            ArrayNode array = nodeFactory.arrayNode();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                JsonNode value = readValue(parser, node);
+                if (value != null) {
+                    array.add(value);
+                }
+            }
+            return array;
+        }
+        // a path can not be applied to a scalar value
+        return null;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2022 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @authors Christof Strack, Stefan Witschel
+ */
+
+package dynamic.mapping.core.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.stereotype.Component;
+
+import dynamic.mapping.model.CacheStatus;
+import dynamic.mapping.model.Mapping;
+import dynamic.mapping.processor.model.TargetTemplate;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * TargetTemplateCache
+ * 
+ * Holds the compiled <code>TargetTemplate</code> of all loaded mappings. The
+ * templates are compiled when a mapping is added to the mapping caches of the
+ * <code>MappingComponent</code> and evicted when the mapping is updated or
+ * deleted.
+ * A template that was compiled from an older version of the mapping is
+ * replaced on demand and counted as a miss.
+ */
+@Slf4j
+@Component
+public class TargetTemplateCache {
+
+    public static final String CACHE_NAME = "targetTemplate";
+
+    // structure: <tenant, templateCacheForTenant>
+    private Map<String, TenantTemplateCache> tenantCaches = new ConcurrentHashMap<>();
+
+    private static class TenantTemplateCache {
+        // structure: <mappingId, template>
+        private final Map<String, TargetTemplate> templates = new ConcurrentHashMap<>();
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+    }
+
+    private TenantTemplateCache getTenantCache(String tenant) {
+        return tenantCaches.computeIfAbsent(tenant, t -> new TenantTemplateCache());
+    }
+
+    public void compileMapping(String tenant, Mapping mapping) {
+        if (mapping == null || mapping.id == null || mapping.target == null) {
+            return;
+        }
+        try {
+            getTenantCache(tenant).templates.put(mapping.id, TargetTemplate.compile(mapping));
+        } catch (RuntimeException e) {
+            // the template is compiled again during processing to report the error for
+            // the message
+            log.warn("Tenant {} - Could not compile target template of mapping {}: {}", tenant, mapping.id,
+                    e.getMessage());
+        }
+    }
+
+    public TargetTemplate getTemplate(String tenant, Mapping mapping) {
+        TenantTemplateCache cache = getTenantCache(tenant);
+        if (mapping.id == null) {
+            cache.misses.increment();
+            return TargetTemplate.compile(mapping);
+        }
+        TargetTemplate template = cache.templates.get(mapping.id);
+        if (template != null && template.isCompiledFrom(mapping)) {
+            cache.hits.increment();
+        } else {
+            cache.misses.increment();
+            template = TargetTemplate.compile(mapping);
+            cache.templates.put(mapping.id, template);
+        }
+        return template;
+    }
+
+    public void evictMapping(String tenant, String mappingId) {
+        TenantTemplateCache cache = tenantCaches.get(tenant);
+        if (cache != null && mappingId != null) {
+            cache.templates.remove(mappingId);
+        }
+    }
+
+    public void evictTenant(String tenant) {
+        tenantCaches.remove(tenant);
+    }
+
+    public CacheStatus getCacheStatus(String tenant) {
+        TenantTemplateCache cache = getTenantCache(tenant);
+        return new CacheStatus(CACHE_NAME, cache.templates.size(), cache.hits.sum(), cache.misses.sum());
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2022 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @authors Christof Strack, Stefan Witschel
+ */
+
+package dynamic.mapping.core.cache;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.stereotype.Component;
+
+import dynamic.mapping.model.CacheStatus;
+import dynamic.mapping.model.Mapping;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * TopicCache
+ * 
+ * Bounded cache per tenant from a concrete topic of an inbound message to the
+ * list of mappings resolved for this topic. This avoids splitting the topic
+ * and walking the <code>MappingTreeNode</code> for every message.
+ * The cache of a tenant is invalidated whenever the tree of inbound mappings
+ * changes. When the cache is full an arbitrary entry is evicted.
+ */
+@Slf4j
+@Component
+public class TopicCache {
+
+    public static final String CACHE_NAME = "topic";
+
+    // structure: <tenant, topicCacheForTenant>
+    private Map<String, TenantTopicCache> tenantCaches = new ConcurrentHashMap<>();
+
+    private static class TenantTopicCache {
+        // structure: <topic, resolvedMappings>
+        private final Map<String, List<Mapping>> resolvedMappings = new ConcurrentHashMap<>();
+        // incremented on every invalidation, so that results resolved from an
+        // outdated tree are not added to the cache
+        private final AtomicLong generation = new AtomicLong();
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+    }
+
+    private TenantTopicCache getTenantCache(String tenant) {
+        return tenantCaches.computeIfAbsent(tenant, t -> new TenantTopicCache());
+    }
+
+    /**
+     * Get the current generation of the cache, which has to be passed to
+     * <code>put</code> after the mappings are resolved
+     */
+    public long getGeneration(String tenant) {
+        return getTenantCache(tenant).generation.get();
+    }
+
+    public List<Mapping> get(String tenant, String topic) {
+        TenantTopicCache cache = getTenantCache(tenant);
+        List<Mapping> mappings = cache.resolvedMappings.get(topic);
+        if (mappings != null) {
+            cache.hits.increment();
+        } else {
+            cache.misses.increment();
+        }
+        return mappings;
+    }
+
+    public void put(String tenant, String topic, List<Mapping> mappings, long generation, int maxSize) {
+        if (maxSize <= 0) {
+            return;
+        }
+        TenantTopicCache cache = getTenantCache(tenant);
+        if (cache.resolvedMappings.size() >= maxSize) {
+            Iterator<String> iterator = cache.resolvedMappings.keySet().iterator();
+            if (iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+        cache.resolvedMappings.put(topic, List.copyOf(mappings));
+        // the tree changed while resolving, the result might be outdated
+        if (cache.generation.get() != generation) {
+            cache.resolvedMappings.remove(topic);
+        }
+    }
+
+    public void invalidate(String tenant) {
+        TenantTopicCache cache = getTenantCache(tenant);
+        cache.generation.incrementAndGet();
+        cache.resolvedMappings.clear();
+        log.debug("Tenant {} - Invalidated topic cache", tenant);
+    }
+
+    public void evictTenant(String tenant) {
+        tenantCaches.remove(tenant);
+    }
+
+    public CacheStatus getCacheStatus(String tenant) {
+        TenantTopicCache cache = getTenantCache(tenant);
+        return new CacheStatus(CACHE_NAME, cache.resolvedMappings.size(), cache.hits.sum(), cache.misses.sum());
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2022 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @authors Christof Strack, Stefan Witschel
+ */
+
+package dynamic.mapping.core.executor;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * CompletableFutureTask
+ * 
+ * <code>FutureTask</code> that completes a <code>CompletableFuture</code> when
+ * it is done, so that callers can chain on the result of a task submitted to a
+ * <code>WorkerPool</code> instead of blocking on it. A task cancelled by the
+ * rejection policy of the pool cancels the completion as well.
+ * The callable returns the future of its result, so a task that sends requests
+ * asynchronously releases its worker as soon as the requests are sent, the
+ * completion is completed when the requests are completed.
+ */
+public class CompletableFutureTask<V> extends FutureTask<CompletionStage<V>> {
+
+    private final CompletableFuture<V> completion = new CompletableFuture<>();
+
+    public CompletableFutureTask(Callable<? extends CompletionStage<V>> callable) {
+        super(callable::call);
+    }
+
+    public CompletableFuture<V> getCompletion() {
+        return completion;
+    }
+
+    @Override
+    protected void done() {
+        if (isCancelled()) {
+            completion.cancel(false);
+            return;
+        }
+        try {
+            CompletionStage<V> pending = get();
+            if (pending == null) {
+                completion.complete(null);
+                return;
+            }
+            pending.whenComplete((result, e) -> {
+                if (e != null) {
+                    completion.completeExceptionally(
+                            e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+                } else {
+                    completion.complete(result);
+                }
+            });
+        } catch (ExecutionException e) {
+            completion.completeExceptionally(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            completion.completeExceptionally(e);
+        }
+    }
+}
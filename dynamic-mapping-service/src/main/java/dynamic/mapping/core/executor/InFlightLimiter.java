@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2022 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @authors Christof Strack, Stefan Witschel
+ */
+
+package dynamic.mapping.core.executor;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import dynamic.mapping.configuration.RejectionPolicy;
+
+/**
+ * InFlightLimiter
+ * 
+ * Bounds the number of concurrent requests a tenant sends to Cumulocity.
+ * Requests are submitted without blocking the caller: when the bound is
+ * reached the request is queued and started as soon as a running request
+ * completes. The result is returned as <code>CompletableFuture</code>, so
+ * callers can chain their work on it.
+ * Operations created by inbound messages are admitted to the backlog of the
+ * limiter, that holds at most <code>BACKLOG_PER_REQUEST</code> operations for
+ * every request in flight. When the backlog is full the
+ * <code>RejectionPolicy</code> of the inbound worker pools is applied, so
+ * that a slow Cumulocity pushes back on the connectors instead of filling the
+ * heap with queued requests.
+ */
+public class InFlightLimiter {
+
+    public static final int BACKLOG_PER_REQUEST = 20;
+
+    private static final long BACKLOG_WAIT_MILLIS = 1000;
+
+    private final Executor executor;
+
+    private volatile int maxInFlight;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+
+    // admitted operations, that are not yet completed
+    private final AtomicInteger backlog = new AtomicInteger();
+
+    // admitted operations in the order they were admitted, only tracked for
+    // DROP_OLDEST
+    private final Set<CompletableFuture<?>> admitted = new LinkedHashSet<>();
+
+    private final Object backlogReleased = new Object();
+
+    private final LongAdder dropped = new LongAdder();
+
+    public InFlightLimiter(Executor executor, int maxInFlight) {
+        this.executor = executor;
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public int getWaiting() {
+        return waiting.size();
+    }
+
+    public int getBacklog() {
+        return backlog.get();
+    }
+
+    public int getMaxBacklog() {
+        return maxInFlight * BACKLOG_PER_REQUEST;
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public boolean isSaturated() {
+        return backlog.get() >= getMaxBacklog();
+    }
+
+    public <T> CompletableFuture<T> submit(Callable<T> request) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        waiting.add(() -> {
+            // the request was dropped while it was queued
+            if (result.isDone()) {
+                return;
+            }
+            try {
+                result.complete(request.call());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        drain();
+        return result;
+    }
+
+    /**
+     * Admits an operation to the backlog and starts it. When the backlog is full
+     * the caller is blocked until an admitted operation completes, with
+     * <code>DROP_OLDEST</code> the oldest admitted operation is cancelled instead.
+     * A cancelled operation, that is already sent, is not interrupted, only its
+     * result is discarded. Operations must not be admitted from the completion of
+     * another operation, as this could block the threads completing the backlog.
+     */
+    public <T> CompletableFuture<T> admit(RejectionPolicy policy, Supplier<CompletableFuture<T>> operation) {
+        acquireBacklog(policy);
+        CompletableFuture<T> result;
+        try {
+            result = operation.get();
+        } catch (RuntimeException e) {
+            releaseBacklog();
+            throw e;
+        }
+        if (policy == RejectionPolicy.DROP_OLDEST) {
+            synchronized (admitted) {
+                admitted.add(result);
+            }
+        }
+        result.whenComplete((r, e) -> {
+            if (policy == RejectionPolicy.DROP_OLDEST) {
+                synchronized (admitted) {
+                    admitted.remove(result);
+                }
+            }
+            releaseBacklog();
+        });
+        return result;
+    }
+
+    private void acquireBacklog(RejectionPolicy policy) {
+        while (true) {
+            int current = backlog.get();
+            if (current < getMaxBacklog()) {
+                if (backlog.compareAndSet(current, current + 1)) {
+                    return;
+                }
+                continue;
+            }
+            if (policy == RejectionPolicy.DROP_OLDEST && dropOldest()) {
+                continue;
+            }
+            synchronized (backlogReleased) {
+                if (backlog.get() >= getMaxBacklog()) {
+                    try {
+                        // block the calling worker until an admitted operation completes
+                        backlogReleased.wait(BACKLOG_WAIT_MILLIS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RejectedExecutionException("Interrupted while waiting for requests to Cumulocity",
+                                e);
+                    }
+                }
+            }
+        }
+    }
+
+    private void releaseBacklog() {
+        backlog.decrementAndGet();
+        synchronized (backlogReleased) {
+            backlogReleased.notify();
+        }
+    }
+
+    private boolean dropOldest() {
+        while (true) {
+            CompletableFuture<?> oldest;
+            synchronized (admitted) {
+                Iterator<CompletableFuture<?>> iterator = admitted.iterator();
+                if (!iterator.hasNext()) {
+                    return false;
+                }
+                oldest = iterator.next();
+                iterator.remove();
+            }
+            // completing the operation releases its place in the backlog
+            if (oldest.cancel(false)) {
+                dropped.increment();
+                return true;
+            }
+        }
+    }
+
+    private void drain() {
+        while (!waiting.isEmpty()) {
+            int current = inFlight.get();
+            if (current >= maxInFlight) {
+                return;
+            }
+            if (!inFlight.compareAndSet(current, current + 1)) {
+                continue;
+            }
+            Runnable next = waiting.poll();
+            if (next == null) {
+                inFlight.decrementAndGet();
+                // a request could have been queued after the check above
+                continue;
+            }
+            try {
+                executor.execute(() -> {
+                    try {
+                        next.run();
+                    } finally {
+                        inFlight.decrementAndGet();
+                        drain();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                inFlight.decrementAndGet();
+                next.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2022 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @authors Christof Strack, Stefan Witschel
+ */
+
+package dynamic.mapping.core.executor;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * OrderedLanes
+ * 
+ * Starts asynchronous operations with the same key one after the other, in the
+ * order they are submitted, while operations with different keys run
+ * concurrently. An operation is started when the previous operation of its
+ * lane is completed, successfully or not. A lane is removed as soon as its last
+ * operation is completed.
+ */
+public class OrderedLanes<K> {
+
+    private final Map<K, CompletableFuture<?>> lanes = new ConcurrentHashMap<>();
+
+    public <T> CompletableFuture<T> submit(K key, Supplier<CompletableFuture<T>> operation) {
+        AtomicReference<CompletableFuture<T>> submitted = new AtomicReference<>();
+        lanes.compute(key, (k, previous) -> {
+            CompletableFuture<T> next = previous == null || previous.isDone()
+                    ? operation.get()
+                    : previous.handle((result, e) -> null).thenCompose(v -> operation.get());
+            submitted.set(next);
+            return next;
+        });
+        CompletableFuture<T> next = submitted.get();
+        next.whenComplete((result, e) -> lanes.remove(key, next));
+        return next;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2022 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @authors Christof Strack, Stefan Witschel
+ */
+
+package dynamic.mapping.core.executor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import dynamic.mapping.model.VirtualThreadStatus;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingFile;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * VirtualThreadDiagnostics
+ * 
+ * Records the JFR event <code>jdk.VirtualThreadPinned</code> when mapping tasks
+ * run on virtual threads. A virtual thread is pinned to its carrier thread when
+ * it blocks inside a <code>synchronized</code> block or a native frame, which
+ * reduces the number of tasks that can make progress. The recorded events are
+ * collected periodically and summarized by the top frame of the pinned thread.
+ */
+@Slf4j
+@Component
+public class VirtualThreadDiagnostics implements DisposableBean {
+
+    private static final String EVENT_VIRTUAL_THREAD_PINNED = "jdk.VirtualThreadPinned";
+
+    private static final int MAX_REPORTED_FRAMES = 10;
+
+    private final boolean virtualThreadsEnabled;
+
+    private final long pinnedThresholdMs;
+
+    private Recording recording;
+
+    private long pinnedEvents;
+
+    private long pinnedDurationMs;
+
+    // structure: <topFrame, numberPinnedEvents>
+    private Map<String, Long> pinnedFrames = new HashMap<>();
+
+    public VirtualThreadDiagnostics(@Value("${APP.virtualThreadsEnabled:false}") boolean virtualThreadsEnabled,
+            @Value("${APP.virtualThreadsPinnedThresholdMs:20}") long pinnedThresholdMs) {
+        this.virtualThreadsEnabled = virtualThreadsEnabled;
+        this.pinnedThresholdMs = pinnedThresholdMs;
+        if (virtualThreadsEnabled && VirtualThreads.isSupported()) {
+            startRecording();
+            log.info("Started recording of pinned virtual threads, threshold {} ms", pinnedThresholdMs);
+        }
+    }
+
+    private void startRecording() {
+        recording = new Recording();
+        recording.setName("dynamic-mapping-pinned-virtual-threads");
+        recording.enable(EVENT_VIRTUAL_THREAD_PINNED)
+                .withThreshold(Duration.ofMillis(pinnedThresholdMs))
+                .withStackTrace();
+        recording.start();
+    }
+
+    @Scheduled(fixedDelay = 60000)
+    public synchronized void collect() {
+        if (recording == null) {
+            return;
+        }
+        Path dump = null;
+        try {
+            recording.stop();
+            dump = Files.createTempFile("pinned-virtual-threads", ".jfr");
+            recording.dump(dump);
+            for (RecordedEvent event : RecordingFile.readAllEvents(dump)) {
+                if (!EVENT_VIRTUAL_THREAD_PINNED.equals(event.getEventType().getName())) {
+                    continue;
+                }
+                pinnedEvents++;
+                pinnedDurationMs += event.getDuration().toMillis();
+                String topFrame = "unknown";
+                if (event.getStackTrace() != null && !event.getStackTrace().getFrames().isEmpty()) {
+                    RecordedFrame frame = event.getStackTrace().getFrames().get(0);
+                    topFrame = frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+                            + ":" + frame.getLineNumber();
+                }
+                pinnedFrames.merge(topFrame, 1L, Long::sum);
+            }
+        } catch (IOException e) {
+            log.warn("Could not collect pinned virtual threads: {}", e.getMessage());
+        } finally {
+            recording.close();
+            if (dump != null) {
+                try {
+                    Files.deleteIfExists(dump);
+                } catch (IOException e) {
+                    log.debug("Could not delete recording {}", dump);
+                }
+            }
+            startRecording();
+        }
+        if (pinnedEvents > 0) {
+            log.debug("Pinned virtual threads: {} events, {} ms", pinnedEvents, pinnedDurationMs);
+        }
+    }
+
+    public synchronized VirtualThreadStatus getStatus() {
+        List<String> topFrames = pinnedFrames.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(MAX_REPORTED_FRAMES)
+                .map(e -> e.getKey() + " (" + e.getValue() + ")")
+                .collect(Collectors.toList());
+        return new VirtualThreadStatus(virtualThreadsEnabled, VirtualThreads.isSupported(), pinnedEvents,
+                pinnedDurationMs, topFrames);
+    }
+
+    @Override
+    public synchronized void destroy() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2022 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @authors Christof Strack, Stefan Witschel
+ */
+
+package dynamic.mapping.core.executor;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * VirtualThreads
+ * 
+ * Creates executors and thread factories backed by virtual threads. The
+ * service is built for Java 11, so the virtual thread API of Java 21 is
+ * resolved reflectively. On older runtimes platform threads are used instead.
+ */
+@Slf4j
+public final class VirtualThreads {
+
+    private static final Method OF_VIRTUAL = lookup(Thread.class, "ofVirtual");
+
+    private VirtualThreads() {
+    }
+
+    private static Method lookup(Class<?> clazz, String name, Class<?>... parameterTypes) {
+        try {
+            return clazz.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * Create a factory for virtual threads named
+     * <code>prefix + counter</code>, or <code>null</code> if virtual threads are
+     * not supported by the runtime
+     */
+    public static ThreadFactory newThreadFactory(String prefix) {
+        if (!isSupported()) {
+            return null;
+        }
+        try {
+            Object builder = OF_VIRTUAL.invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, 1L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            log.warn("Could not create virtual thread factory: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Create an executor starting a new virtual thread for every task. Falls back
+     * to a cached thread pool if virtual threads are not supported by the runtime
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String prefix) {
+        ThreadFactory threadFactory = newThreadFactory(prefix);
+        if (threadFactory != null) {
+            try {
+                Method newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor",
+                        ThreadFactory.class);
+                return (ExecutorService) newThreadPerTaskExecutor.invoke(null, threadFactory);
+            } catch (ReflectiveOperationException e) {
+                log.warn("Could not create virtual thread executor: {}", e.getMessage());
+            }
+        }
+        log.warn("Virtual threads are not supported by Java {}, using platform threads",
+                System.getProperty("java.version"));
+        return Executors.newCachedThreadPool();
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2022 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @authors Christof Strack, Stefan Witschel
+ */
+
+package dynamic.mapping.core.executor;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import dynamic.mapping.configuration.RejectionPolicy;
+import dynamic.mapping.model.WorkerPoolStatus;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * WorkerPool
+ * 
+ * Executor with a fixed number of workers and a bounded queue, used to process
+ * the inbound messages of one connector of a tenant. When the queue is full the
+ * configured <code>RejectionPolicy</code> is applied, so that a burst of
+ * messages can not create an unbounded number of threads.
+ * With <code>SPILL</code> the overflow runs on a second pool of the same size
+ * and queue capacity, when this is full as well the connector is blocked.
+ * The mappings of a message are fanned out to a pool of the same size without
+ * a queue. When all its threads are busy, the mapping runs on the calling
+ * worker, so the fan-out never blocks a worker and never creates more threads.
+ */
+@Slf4j
+public class WorkerPool extends ThreadPoolExecutor {
+
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    @Getter
+    private final String tenant;
+
+    @Getter
+    private final String connectorIdent;
+
+    @Getter
+    private final RejectionPolicy rejectionPolicy;
+
+    private final int queueCapacity;
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final LongAdder spilled = new LongAdder();
+
+    // only created for the SPILL policy
+    private final ThreadPoolExecutor spillPool;
+
+    private final ThreadPoolExecutor fanOutPool;
+
+    public WorkerPool(String tenant, String connectorIdent, int poolSize, int queueCapacity,
+            RejectionPolicy rejectionPolicy, boolean virtualThreads) {
+        super(poolSize, poolSize, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                new WorkerThreadFactory(tenant, connectorIdent, virtualThreads));
+        this.tenant = tenant;
+        this.connectorIdent = connectorIdent;
+        this.rejectionPolicy = rejectionPolicy;
+        this.queueCapacity = queueCapacity;
+        // release the workers of idle connectors
+        allowCoreThreadTimeOut(true);
+        if (rejectionPolicy == RejectionPolicy.SPILL) {
+            spillPool = new ThreadPoolExecutor(poolSize, poolSize, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity),
+                    new WorkerThreadFactory(tenant, connectorIdent + "-spill", virtualThreads),
+                    createRejectionHandler(RejectionPolicy.BLOCK));
+            spillPool.allowCoreThreadTimeOut(true);
+        } else {
+            spillPool = null;
+        }
+        fanOutPool = new ThreadPoolExecutor(poolSize, poolSize, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), new WorkerThreadFactory(tenant, connectorIdent + "-fanout", virtualThreads),
+                // run on the calling worker, also when the pool is shut down, so no task is lost
+                (task, executor) -> task.run());
+        fanOutPool.allowCoreThreadTimeOut(true);
+        setRejectedExecutionHandler(createRejectionHandler(rejectionPolicy));
+    }
+
+    /**
+     * Executor to process parts of a message concurrently, e.g. its mappings. The
+     * task runs on the calling thread, when all threads of the fan-out pool are
+     * busy.
+     */
+    public Executor getFanOutExecutor() {
+        return fanOutPool;
+    }
+
+    private RejectedExecutionHandler createRejectionHandler(RejectionPolicy policy) {
+        switch (policy) {
+            case DROP_OLDEST:
+                return (task, executor) -> {
+                    if (executor.isShutdown()) {
+                        throw new RejectedExecutionException("Worker pool is shut down");
+                    }
+                    Runnable oldest = executor.getQueue().poll();
+                    if (oldest instanceof Future) {
+                        // complete the future of the dropped message, so that callers waiting for
+                        // the result are released
+                        ((Future<?>) oldest).cancel(false);
+                    }
+                    dropped.increment();
+                    log.warn("Tenant {} - Worker pool of connector {} is saturated, dropped oldest message",
+                            tenant, connectorIdent);
+                    executor.execute(task);
+                };
+            case SPILL:
+                return (task, executor) -> {
+                    if (executor.isShutdown()) {
+                        throw new RejectedExecutionException("Worker pool is shut down");
+                    }
+                    spilled.increment();
+                    spillPool.execute(task);
+                };
+            case BLOCK:
+            default:
+                return (task, executor) -> {
+                    if (executor.isShutdown()) {
+                        throw new RejectedExecutionException("Worker pool is shut down");
+                    }
+                    try {
+                        // block the calling connector thread until a slot in the queue is free
+                        executor.getQueue().put(task);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RejectedExecutionException("Interrupted while waiting for worker pool", e);
+                    }
+                };
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        fanOutPool.shutdown();
+        if (spillPool != null) {
+            spillPool.shutdown();
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> pending = super.shutdownNow();
+        fanOutPool.shutdownNow();
+        if (spillPool != null) {
+            pending.addAll(spillPool.shutdownNow());
+        }
+        return pending;
+    }
+
+    public WorkerPoolStatus getStatus() {
+        return new WorkerPoolStatus(connectorIdent, rejectionPolicy, getMaximumPoolSize(), getActiveCount(),
+                getQueue().size(), queueCapacity, getCompletedTaskCount(), dropped.sum(), spilled.sum());
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+        private final String prefix;
+        // workers are virtual threads, if enabled and supported by the runtime
+        private final ThreadFactory virtualThreadFactory;
+
+        WorkerThreadFactory(String tenant, String connectorIdent, boolean virtualThreads) {
+            this.prefix = "worker-" + tenant + "-" + connectorIdent + "-";
+            this.virtualThreadFactory = virtualThreads ? VirtualThreads.newThreadFactory(prefix) : null;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            if (virtualThreadFactory != null) {
+                return virtualThreadFactory.newThread(runnable);
+            }
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
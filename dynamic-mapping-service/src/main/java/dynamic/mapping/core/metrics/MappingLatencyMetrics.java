@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2022 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @authors Christof Strack, Stefan Witschel
+ */
+
+package dynamic.mapping.core.metrics;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import dynamic.mapping.model.ProcessingStage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * MappingLatencyMetrics
+ * 
+ * Latency histograms per mapping and <code>ProcessingStage</code>, registered
+ * as Micrometer timers. They are exported with the configured registries, e.g.
+ * Prometheus, and through the Micrometer bridge of the OpenTelemetry starter.
+ * The timers publish histogram buckets instead of precomputed percentiles, so
+ * the percentiles can be aggregated across replicas. For the summary in the
+ * <code>MappingStatus</code> they are estimated from the buckets.
+ * The timers are registered for every mapping and stage, so they publish a
+ * small fixed set of buckets instead of the about 70 buckets of the default
+ * percentile histogram.
+ */
+@Slf4j
+@Component
+public class MappingLatencyMetrics {
+
+    public static final String METRIC_STAGE_LATENCY = "dynmapper.mapping.stage.latency";
+
+    // bucket boundaries from the in-memory stages to requests sent to Cumulocity
+    private static final Duration[] LATENCY_BUCKETS = {
+            Duration.ofNanos(100_000), Duration.ofNanos(250_000), Duration.ofNanos(500_000),
+            Duration.ofMillis(1), Duration.ofMillis(2), Duration.ofMillis(5), Duration.ofMillis(10),
+            Duration.ofMillis(25), Duration.ofMillis(50), Duration.ofMillis(100), Duration.ofMillis(250),
+            Duration.ofMillis(500), Duration.ofSeconds(1), Duration.ofMillis(2500), Duration.ofSeconds(5),
+            Duration.ofSeconds(10) };
+
+    private MeterRegistry meterRegistry;
+
+    // structure: <tenant, <mappingIdent, <stage, timer>>>
+    private Map<String, Map<String, Map<ProcessingStage, Timer>>> timers = new ConcurrentHashMap<>();
+
+    @Autowired(required = false)
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public Map<ProcessingStage, Timer> getTimers(String tenant, String mappingIdent, String direction) {
+        if (meterRegistry == null || mappingIdent == null) {
+            return Collections.emptyMap();
+        }
+        return timers.computeIfAbsent(tenant, t -> new ConcurrentHashMap<>()).computeIfAbsent(mappingIdent,
+                ident -> {
+                    Map<ProcessingStage, Timer> stageTimers = new EnumMap<>(ProcessingStage.class);
+                    for (ProcessingStage stage : ProcessingStage.values()) {
+                        stageTimers.put(stage, Timer.builder(METRIC_STAGE_LATENCY)
+                                .description("Latency of a processing stage of a mapping")
+                                .tag("tenant", tenant)
+                                .tag("mapping", ident)
+                                .tag("direction", direction == null ? "UNSPECIFIED" : direction)
+                                .tag("stage", stage.name())
+                                .serviceLevelObjectives(LATENCY_BUCKETS)
+                                .distributionStatisticExpiry(Duration.ofMinutes(5))
+                                .register(meterRegistry));
+                    }
+                    return Collections.unmodifiableMap(stageTimers);
+                });
+    }
+
+    public void removeMapping(String tenant, String mappingIdent) {
+        Map<String, Map<ProcessingStage, Timer>> tenantTimers = timers.get(tenant);
+        if (tenantTimers != null && mappingIdent != null) {
+            remove(tenantTimers.remove(mappingIdent));
+        }
+    }
+
+    public void removeTenant(String tenant) {
+        Map<String, Map<ProcessingStage, Timer>> tenantTimers = timers.remove(tenant);
+        if (tenantTimers != null) {
+            tenantTimers.values().forEach(this::remove);
+            log.debug("Tenant {} - Removed latency metrics of {} mappings", tenant, tenantTimers.size());
+        }
+    }
+
+    private void remove(Map<ProcessingStage, Timer> stageTimers) {
+        if (stageTimers != null) {
+            stageTimers.values().forEach(meterRegistry::remove);
+        }
+    }
+}
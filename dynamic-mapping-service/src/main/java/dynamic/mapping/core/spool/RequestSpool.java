@@ -0,0 +1,364 @@
+/*
+ * Copyright (c) 2022 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @authors Christof Strack, Stefan Witschel
+ */
+
+package dynamic.mapping.core.spool;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * RequestSpool
+ * 
+ * Append-only spool of the requests of one tenant, that could not be sent to
+ * Cumulocity. The requests are written to memory-mapped segment files, so they
+ * survive a restart of the service and are recovered when the spool is opened
+ * again.
+ * Every entry is stored as: length (int), state (byte), request as JSON. The
+ * length is written last, so an entry that was not completely written is
+ * ignored on recovery. Every entry is forced to disk when it is appended.
+ * Replayed entries are marked in place and a segment file
+ * is deleted as soon as all its entries are replayed.
+ * Only the position of the pending entries is kept in memory, in the order they
+ * were appended.
+ */
+@Slf4j
+public class RequestSpool implements Closeable {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".spool";
+
+    private static final int HEADER_SIZE = 5;
+    private static final byte STATE_PENDING = 0;
+    private static final byte STATE_REPLAYED = 1;
+
+    @Getter
+    private final String tenant;
+
+    private final Path directory;
+
+    private final int segmentSize;
+
+    private final ObjectMapper objectMapper;
+
+    private final NavigableMap<Long, Segment> segments = new TreeMap<>();
+
+    // pending entries in the order they were appended
+    private final LinkedHashSet<Entry> pending = new LinkedHashSet<>();
+
+    private final Map<String, Integer> pendingPerSource = new HashMap<>();
+
+    private Segment active;
+
+    public RequestSpool(String tenant, Path directory, int segmentSize, ObjectMapper objectMapper)
+            throws IOException {
+        this.tenant = tenant;
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.objectMapper = objectMapper;
+        Files.createDirectories(directory);
+        recover();
+    }
+
+    public void append(SpooledRequest request) throws IOException {
+        append(request, Long.MAX_VALUE);
+    }
+
+    /**
+     * Appends a request, as long as the segment files of the spool do not exceed
+     * <code>maxSize</code> bytes.
+     */
+    public synchronized void append(SpooledRequest request, long maxSize) throws IOException {
+        byte[] data = objectMapper.writeValueAsBytes(request);
+        if (HEADER_SIZE + data.length > segmentSize) {
+            throw new IOException("Request of " + data.length + " bytes exceeds spool segment size " + segmentSize);
+        }
+        if (active == null || active.writePosition + HEADER_SIZE + data.length > segmentSize) {
+            if (getSize() + segmentSize > maxSize) {
+                throw new FullException("Spool of " + getSize() + " bytes is full");
+            }
+            active = createSegment(segments.isEmpty() ? 0 : segments.lastKey() + 1);
+        }
+        int offset = active.writePosition;
+        MappedByteBuffer buffer = active.buffer;
+        buffer.put(offset + 4, STATE_PENDING);
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset + HEADER_SIZE);
+        view.put(data);
+        // the length completes the entry
+        buffer.putInt(offset, data.length);
+        active.writePosition = offset + HEADER_SIZE + data.length;
+        // write the entry to disk before the request is reported as spooled
+        buffer.force();
+        addPending(new Entry(active, offset, request.getSource(), request.getSpooledAt()));
+    }
+
+    public synchronized boolean hasPending(String source) {
+        return pendingPerSource.containsKey(source);
+    }
+
+    public synchronized int getDepth() {
+        return pending.size();
+    }
+
+    /**
+     * Returns the size in bytes of the segment files on disk.
+     */
+    public synchronized long getSize() {
+        return (long) segments.size() * segmentSize;
+    }
+
+    /**
+     * Returns the time the oldest pending request was spooled, or -1 when the
+     * spool is empty.
+     */
+    public synchronized long getOldestSpooledAt() {
+        Iterator<Entry> it = pending.iterator();
+        return it.hasNext() ? it.next().spooledAt : -1;
+    }
+
+    /**
+     * Returns up to <code>limit</code> pending entries in the order they were
+     * appended.
+     */
+    public synchronized List<Entry> peek(int limit) {
+        List<Entry> result = new ArrayList<>(Math.min(limit, pending.size()));
+        Iterator<Entry> it = pending.iterator();
+        while (it.hasNext() && result.size() < limit) {
+            result.add(it.next());
+        }
+        return result;
+    }
+
+    public synchronized SpooledRequest read(Entry entry) throws IOException {
+        if (entry.segment.buffer == null) {
+            throw new IOException("Spool segment " + entry.segment.path + " is closed");
+        }
+        return read(entry.segment.buffer, entry.offset);
+    }
+
+    public synchronized void markReplayed(Entry entry) {
+        if (!pending.remove(entry)) {
+            return;
+        }
+        pendingPerSource.computeIfPresent(entry.source, (source, count) -> count > 1 ? count - 1 : null);
+        Segment segment = entry.segment;
+        if (segment.buffer != null) {
+            segment.buffer.put(entry.offset + 4, STATE_REPLAYED);
+        }
+        if (--segment.pending == 0 && segment != active) {
+            deleteSegment(segment);
+        }
+    }
+
+    /**
+     * Writes the modified content of the active segment to the storage device.
+     */
+    public synchronized void force() {
+        if (active != null) {
+            active.buffer.force();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        for (Segment segment : segments.values()) {
+            closeSegment(segment);
+        }
+        segments.clear();
+        pending.clear();
+        pendingPerSource.clear();
+        active = null;
+    }
+
+    private void recover() throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                try {
+                    long sequence = Long.parseLong(
+                            name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                    segments.put(sequence, openSegment(sequence, path));
+                } catch (NumberFormatException e) {
+                    log.warn("Tenant {} - Ignoring unknown file in spool: {}", tenant, path);
+                }
+            }
+        }
+        for (Segment segment : new ArrayList<>(segments.values())) {
+            int position = 0;
+            while (position + HEADER_SIZE <= segmentSize) {
+                int length = segment.buffer.getInt(position);
+                if (length <= 0 || position + HEADER_SIZE + length > segmentSize) {
+                    break;
+                }
+                if (segment.buffer.get(position + 4) == STATE_PENDING) {
+                    try {
+                        SpooledRequest request = read(segment.buffer, position);
+                        addPending(new Entry(segment, position, request.getSource(), request.getSpooledAt()));
+                    } catch (IOException e) {
+                        log.warn("Tenant {} - Skipping unreadable spool entry at {} in {}", tenant, position,
+                                segment.path);
+                        segment.buffer.put(position + 4, STATE_REPLAYED);
+                    }
+                }
+                position += HEADER_SIZE + length;
+            }
+            segment.writePosition = position;
+        }
+        // continue appending to the last segment, all other replayed segments are obsolete
+        active = segments.isEmpty() ? null : segments.lastEntry().getValue();
+        for (Segment segment : new ArrayList<>(segments.values())) {
+            if (segment.pending == 0 && segment != active) {
+                deleteSegment(segment);
+            }
+        }
+        if (!pending.isEmpty()) {
+            log.info("Tenant {} - Recovered {} spooled requests from {}", tenant, pending.size(), directory);
+        }
+    }
+
+    private SpooledRequest read(MappedByteBuffer buffer, int offset) throws IOException {
+        int length = buffer.getInt(offset);
+        byte[] data = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset + HEADER_SIZE);
+        view.get(data);
+        return objectMapper.readValue(data, SpooledRequest.class);
+    }
+
+    private void addPending(Entry entry) {
+        pending.add(entry);
+        pendingPerSource.merge(entry.source, 1, Integer::sum);
+        entry.segment.pending++;
+    }
+
+    private Segment createSegment(long sequence) throws IOException {
+        Segment segment = openSegment(sequence,
+                directory.resolve(String.format("%s%019d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX)));
+        segments.put(sequence, segment);
+        // the previous active segment is obsolete when all its entries were replayed
+        if (active != null && active.pending == 0) {
+            deleteSegment(active);
+        }
+        return segment;
+    }
+
+    private Segment openSegment(long sequence, Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            return new Segment(sequence, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void deleteSegment(Segment segment) {
+        segments.remove(segment.sequence);
+        closeSegment(segment);
+        try {
+            Files.deleteIfExists(segment.path);
+            log.debug("Tenant {} - Deleted replayed spool segment {}", tenant, segment.path);
+        } catch (IOException e) {
+            log.warn("Tenant {} - Could not delete spool segment {}: {}", tenant, segment.path, e.getMessage());
+        }
+    }
+
+    private void closeSegment(Segment segment) {
+        if (segment.buffer != null) {
+            segment.buffer.force();
+            segment.buffer = null;
+        }
+        try {
+            segment.channel.close();
+        } catch (IOException e) {
+            log.warn("Tenant {} - Could not close spool segment {}: {}", tenant, segment.path, e.getMessage());
+        }
+    }
+
+    private static class Segment {
+        private final long sequence;
+        private final Path path;
+        private final FileChannel channel;
+        private MappedByteBuffer buffer;
+        private int writePosition;
+        private int pending;
+
+        private Segment(long sequence, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.sequence = sequence;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+
+    /**
+     * Thrown when a request is appended to a spool, that reached its maximum
+     * size.
+     */
+    public static class FullException extends IOException {
+        public FullException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Position of a pending request in the spool.
+     */
+    public static class Entry {
+        private final Segment segment;
+        private final int offset;
+        @Getter
+        private final String source;
+        @Getter
+        private final long spooledAt;
+
+        private Entry(Segment segment, int offset, String source, long spooledAt) {
+            this.segment = segment;
+            this.offset = offset;
+            this.source = source;
+            this.spooledAt = spooledAt;
+        }
+    }
+}
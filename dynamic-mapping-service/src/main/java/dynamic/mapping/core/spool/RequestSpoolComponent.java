@@ -0,0 +1,352 @@
+/*
+ * Copyright (c) 2022 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @authors Christof Strack, Stefan Witschel
+ */
+
+package dynamic.mapping.core.spool;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.cumulocity.sdk.client.SDKException;
+
+import dynamic.mapping.configuration.ServiceConfiguration;
+import dynamic.mapping.core.ConfigurationRegistry;
+import dynamic.mapping.core.executor.InFlightLimiter;
+import dynamic.mapping.model.API;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * RequestSpoolComponent
+ * 
+ * Manages the <code>RequestSpool</code> of every tenant. Requests that fail
+ * because Cumulocity is not reachable or overloaded are spooled instead of
+ * being dropped. While a tenant is in outage, or a device still has spooled
+ * requests, new requests are spooled as well, so the requests of a device are
+ * replayed in the order they were created.
+ * A replay pass sends the spooled requests in parallel through the requests in
+ * flight of the tenant, the requests of a device in the order they were
+ * spooled. A pass starts every second, or as soon as the previous pass is
+ * completed, when the replay rate is not limited. After a request fails again
+ * with an outage, the pass does not send further requests and the next pass
+ * only probes with the oldest request. Other failures drop the request.
+ * The spool of a tenant is limited to the configured size on disk, requests
+ * that do not fit fail with an error.
+ * Spooling requires <code>APP.spoolDirectory</code> to point to a persistent
+ * volume, without it requests are not spooled even if spooling is enabled.
+ */
+@Slf4j
+@Component
+public class RequestSpoolComponent {
+
+    public static final String METRIC_SPOOL_DEPTH = "dynmapper.spool.depth";
+    public static final String METRIC_SPOOL_AGE = "dynmapper.spool.age";
+
+    private ConfigurationRegistry configurationRegistry;
+
+    @Autowired
+    public void setConfigurationRegistry(@Lazy ConfigurationRegistry configurationRegistry) {
+        this.configurationRegistry = configurationRegistry;
+    }
+
+    private MeterRegistry meterRegistry;
+
+    @Autowired(required = false)
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Value("${APP.spoolDirectory:}")
+    private String spoolDirectory;
+
+    private Map<String, RequestSpool> spools = new ConcurrentHashMap<>();
+
+    private Map<String, List<Meter>> meters = new ConcurrentHashMap<>();
+
+    // tenants for which Cumulocity is currently not reachable
+    private Set<String> outages = ConcurrentHashMap.newKeySet();
+
+    // tenants for which the missing spool directory was already reported
+    private Set<String> missingDirectoryReported = ConcurrentHashMap.newKeySet();
+
+    // tenants with a replay pass in progress
+    private Set<String> replaying = ConcurrentHashMap.newKeySet();
+
+    public boolean isEnabled(String tenant) {
+        ServiceConfiguration serviceConfiguration = configurationRegistry.getServiceConfigurations().get(tenant);
+        if (serviceConfiguration == null || !serviceConfiguration.spoolEnabled) {
+            return false;
+        }
+        if (!isDirectoryConfigured()) {
+            if (missingDirectoryReported.add(tenant)) {
+                log.warn("Tenant {} - Spooling is enabled, but APP.spoolDirectory is not set, requests are not spooled",
+                        tenant);
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns true when a new request has to be spooled instead of being sent,
+     * either because the tenant is in outage or because older requests of the
+     * device are still waiting in the spool.
+     */
+    public boolean shouldSpool(String tenant, String source) {
+        if (outages.contains(tenant)) {
+            return isEnabled(tenant);
+        }
+        RequestSpool spool = spools.get(tenant);
+        return spool != null && spool.hasPending(source);
+    }
+
+    /**
+     * Appends a request to the spool of the tenant. Returns false when the
+     * request could not be spooled.
+     */
+    public boolean spool(String tenant, String mapping, API api, String source, String request) {
+        try {
+            getSpool(tenant).append(new SpooledRequest(api.name(), source, mapping, request,
+                    System.currentTimeMillis()), getMaxSize(tenant));
+            log.debug("Tenant {} - Spooled request for device {}: {} {}", tenant, source, api, request);
+            return true;
+        } catch (RequestSpool.FullException e) {
+            log.error("Tenant {} - Spool reached its maximum size of {} MB, request of device {} fails: {} {}",
+                    tenant, getMaxSize(tenant) / (1024 * 1024), source, api, request);
+            return false;
+        } catch (IOException e) {
+            log.error("Tenant {} - Could not spool request: {} {}: ", tenant, api, request, e);
+            return false;
+        }
+    }
+
+    public void reportOutage(String tenant) {
+        if (outages.add(tenant)) {
+            log.warn("Tenant {} - Cumulocity not reachable, spooling requests", tenant);
+        }
+    }
+
+    public boolean isOutage(String tenant) {
+        return outages.contains(tenant);
+    }
+
+    /**
+     * Returns true when the error is caused by Cumulocity not being reachable or
+     * being overloaded, so the request can be sent again later.
+     */
+    public static boolean isUnavailable(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof SDKException) {
+                int status = ((SDKException) t).getHttpStatus();
+                if (status == 0 || status == 429 || status >= 500) {
+                    return true;
+                }
+            }
+            if (t instanceof ConnectException || t instanceof SocketTimeoutException
+                    || t instanceof UnknownHostException) {
+                return true;
+            }
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Opens the spool of a tenant, when requests of a previous run are waiting
+     * on disk.
+     */
+    public void recoverSpool(String tenant) {
+        if (isDirectoryConfigured() && Files.isDirectory(getTenantDirectory(tenant))) {
+            try {
+                getSpool(tenant);
+            } catch (IOException e) {
+                log.error("Tenant {} - Could not recover spool: ", tenant, e);
+            }
+        }
+    }
+
+    public void removeSpool(String tenant) {
+        outages.remove(tenant);
+        missingDirectoryReported.remove(tenant);
+        replaying.remove(tenant);
+        List<Meter> tenantMeters = meters.remove(tenant);
+        if (tenantMeters != null && meterRegistry != null) {
+            tenantMeters.forEach(meterRegistry::remove);
+        }
+        RequestSpool spool = spools.remove(tenant);
+        if (spool != null) {
+            // keep the files, they are replayed when the tenant subscribes again
+            spool.close();
+        }
+    }
+
+    @Scheduled(fixedDelay = 1000)
+    public void replay() {
+        spools.forEach(this::replay);
+    }
+
+    private void replay(String tenant, RequestSpool spool) {
+        ServiceConfiguration serviceConfiguration = configurationRegistry.getServiceConfigurations().get(tenant);
+        if (serviceConfiguration == null || spool.getDepth() == 0 || !replaying.add(tenant)) {
+            return;
+        }
+        // while in outage only the oldest request is sent, to probe if Cumulocity is reachable
+        boolean probe = outages.contains(tenant);
+        int limit;
+        if (probe) {
+            limit = 1;
+        } else if (serviceConfiguration.spoolReplayRate > 0) {
+            limit = serviceConfiguration.spoolReplayRate;
+        } else {
+            limit = Math.max(1, serviceConfiguration.maxInFlightRequests) * InFlightLimiter.BACKLOG_PER_REQUEST;
+        }
+        AtomicInteger replayed = new AtomicInteger();
+        List<CompletableFuture<?>> replays = new ArrayList<>();
+        for (RequestSpool.Entry entry : spool.peek(limit)) {
+            SpooledRequest request;
+            try {
+                request = spool.read(entry);
+            } catch (IOException e) {
+                log.error("Tenant {} - Dropping unreadable spooled request of device {}: {}", tenant,
+                        entry.getSource(), e.getMessage());
+                spool.markReplayed(entry);
+                continue;
+            }
+            replays.add(configurationRegistry.getC8yAgent().submitForDevice(tenant, request.getSource(),
+                    () -> replay(tenant, spool, entry, request, probe, replayed)));
+        }
+        CompletableFuture.allOf(replays.toArray(new CompletableFuture<?>[0])).whenComplete((v, e) -> {
+            spool.force();
+            replaying.remove(tenant);
+            if (replayed.get() > 0) {
+                log.debug("Tenant {} - Replayed {} spooled requests, {} remaining", tenant, replayed.get(),
+                        spool.getDepth());
+            }
+            // continue with the next pass, unless the replay rate is limited
+            if (serviceConfiguration.spoolReplayRate <= 0 && !outages.contains(tenant) && spool.getDepth() > 0
+                    && spools.get(tenant) == spool) {
+                configurationRegistry.getCachedThreadPool().execute(() -> replay(tenant, spool));
+            }
+        });
+    }
+
+    private boolean replay(String tenant, RequestSpool spool, RequestSpool.Entry entry, SpooledRequest request,
+            boolean probe, AtomicInteger replayed) {
+        // keep the order of the requests of a device, after an earlier request failed with an outage
+        if (!probe && outages.contains(tenant)) {
+            return false;
+        }
+        try {
+            configurationRegistry.getC8yAgent().sendMEAO(tenant, API.fromString(request.getApi()),
+                    request.getRequest());
+            if (outages.remove(tenant)) {
+                log.info("Tenant {} - Cumulocity reachable again, replaying {} spooled requests", tenant,
+                        spool.getDepth());
+            }
+            replayed.incrementAndGet();
+        } catch (Exception e) {
+            if (isUnavailable(e)) {
+                reportOutage(tenant);
+                return false;
+            }
+            log.error("Tenant {} - Dropping spooled request of mapping {} for device {}: {} {}: ", tenant,
+                    request.getMapping(), request.getSource(), request.getApi(), request.getRequest(), e);
+        }
+        spool.markReplayed(entry);
+        return true;
+    }
+
+    private long getMaxSize(String tenant) {
+        ServiceConfiguration serviceConfiguration = configurationRegistry.getServiceConfigurations().get(tenant);
+        int maxSize = serviceConfiguration != null ? serviceConfiguration.spoolMaxSize
+                : new ServiceConfiguration().spoolMaxSize;
+        // a maximum size of 0 does not limit the spool
+        return maxSize > 0 ? maxSize * 1024L * 1024L : Long.MAX_VALUE;
+    }
+
+    private RequestSpool getSpool(String tenant) throws IOException {
+        RequestSpool spool = spools.get(tenant);
+        if (spool == null) {
+            synchronized (spools) {
+                spool = spools.get(tenant);
+                if (spool == null) {
+                    if (!isDirectoryConfigured()) {
+                        throw new IOException("APP.spoolDirectory is not set");
+                    }
+                    spool = new RequestSpool(tenant, getTenantDirectory(tenant), RequestSpool.DEFAULT_SEGMENT_SIZE,
+                            configurationRegistry.getObjectMapper());
+                    spools.put(tenant, spool);
+                    registerMeters(spool);
+                }
+            }
+        }
+        return spool;
+    }
+
+    private void registerMeters(RequestSpool spool) {
+        if (meterRegistry == null) {
+            return;
+        }
+        List<Meter> tenantMeters = new ArrayList<>();
+        tenantMeters.add(Gauge.builder(METRIC_SPOOL_DEPTH, spool, RequestSpool::getDepth)
+                .description("Number of requests waiting in the spool")
+                .tag("tenant", spool.getTenant())
+                .register(meterRegistry));
+        tenantMeters.add(Gauge.builder(METRIC_SPOOL_AGE, spool, s -> {
+            long oldest = s.getOldestSpooledAt();
+            return oldest < 0 ? 0 : (System.currentTimeMillis() - oldest) / 1000.0;
+        })
+                .description("Age in seconds of the oldest request waiting in the spool")
+                .tag("tenant", spool.getTenant())
+                .baseUnit("seconds")
+                .register(meterRegistry));
+        meters.put(spool.getTenant(), tenantMeters);
+    }
+
+    private boolean isDirectoryConfigured() {
+        return spoolDirectory != null && !spoolDirectory.isBlank();
+    }
+
+    private Path getTenantDirectory(String tenant) {
+        return Paths.get(spoolDirectory, tenant);
+    }
+}
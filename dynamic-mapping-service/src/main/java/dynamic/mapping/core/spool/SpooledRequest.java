@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2022 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @authors Christof Strack, Stefan Witschel
+ */
+
+package dynamic.mapping.core.spool;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * SpooledRequest
+ * 
+ * Request to Cumulocity that is stored in the <code>RequestSpool</code> of a
+ * tenant, while the platform is not reachable.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SpooledRequest {
+    // name of the target API, e.g. MEASUREMENT
+    private String api;
+    // device the request is sent for, replay is ordered per device
+    private String source;
+    // identifier of the mapping that created the request
+    private String mapping;
+    private String request;
+    // epoch millis when the request was spooled
+    private long spooledAt;
+}
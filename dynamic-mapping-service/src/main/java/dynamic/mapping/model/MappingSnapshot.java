@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2022 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @authors Christof Strack, Stefan Witschel
+ */
+
+package dynamic.mapping.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * MappingSnapshot
+ * 
+ * Immutable snapshot of the mappings of a tenant with all indexes used to
+ * resolve them:
+ * <ul>
+ * <li>inbound and outbound mappings by <code>mapping.id</code></li>
+ * <li>the <code>MappingTreeNode</code> of the inbound mappings used for
+ * monitoring</li>
+ * <li>the <code>MappingTopicTrie</code> used to resolve inbound messages</li>
+ * <li>the <code>OutboundFilterIndex</code> used to resolve notifications</li>
+ * </ul>
+ * Every change creates a new snapshot, that is published with one atomic
+ * reference swap. Readers on the hot path never lock and never see a partly
+ * updated set of indexes. The contained indexes must not be modified after the
+ * snapshot is created.
+ */
+@Slf4j
+@Getter
+public final class MappingSnapshot {
+
+    private final String tenant;
+
+    // structure: <mappingId, mapping>
+    private final Map<String, Mapping> inboundMappings;
+
+    // structure: <mappingId, mapping>
+    private final Map<String, Mapping> outboundMappings;
+
+    private final MappingTreeNode inboundTree;
+
+    private final MappingTopicTrie inboundTrie;
+
+    private final OutboundFilterIndex outboundIndex;
+
+    private MappingSnapshot(String tenant, Map<String, Mapping> inboundMappings, MappingTreeNode inboundTree,
+            MappingTopicTrie inboundTrie, Map<String, Mapping> outboundMappings, OutboundFilterIndex outboundIndex) {
+        this.tenant = tenant;
+        this.inboundMappings = Collections.unmodifiableMap(inboundMappings);
+        this.inboundTree = inboundTree;
+        this.inboundTrie = inboundTrie;
+        this.outboundMappings = Collections.unmodifiableMap(outboundMappings);
+        this.outboundIndex = outboundIndex;
+    }
+
+    public static MappingSnapshot empty(String tenant) {
+        return new MappingSnapshot(tenant, Collections.emptyMap(), MappingTreeNode.createRootNode(tenant),
+                MappingTopicTrie.empty(), Collections.emptyMap(), OutboundFilterIndex.empty());
+    }
+
+    /**
+     * Create a new snapshot with the inbound mappings replaced
+     */
+    public MappingSnapshot withInbound(Collection<Mapping> mappings) {
+        return withInboundMappings(byId(mappings));
+    }
+
+    /**
+     * Create a new snapshot containing the inbound mapping, an existing mapping
+     * with the same id is replaced
+     */
+    public MappingSnapshot withInboundMapping(Mapping mapping) {
+        Map<String, Mapping> mappingsById = new LinkedHashMap<>(inboundMappings);
+        mappingsById.put(mapping.id, mapping);
+        return withInboundMappings(mappingsById);
+    }
+
+    /**
+     * Create a new snapshot without the inbound mapping
+     */
+    public MappingSnapshot withoutInboundMapping(Mapping mapping) {
+        if (!inboundMappings.containsKey(mapping.id)) {
+            return this;
+        }
+        Map<String, Mapping> mappingsById = new LinkedHashMap<>(inboundMappings);
+        mappingsById.remove(mapping.id);
+        return withInboundMappings(mappingsById);
+    }
+
+    /**
+     * Create a new snapshot with the outbound mappings replaced
+     */
+    public MappingSnapshot withOutbound(Collection<Mapping> mappings) {
+        Map<String, Mapping> mappingsById = byId(mappings);
+        return new MappingSnapshot(tenant, inboundMappings, inboundTree, inboundTrie, mappingsById,
+                OutboundFilterIndex.build(mappingsById.values()));
+    }
+
+    /**
+     * Create a new snapshot containing the outbound mapping, an existing mapping
+     * with the same id is replaced
+     */
+    public MappingSnapshot withOutboundMapping(Mapping mapping) {
+        Map<String, Mapping> mappingsById = new LinkedHashMap<>(outboundMappings);
+        mappingsById.put(mapping.id, mapping);
+        return new MappingSnapshot(tenant, inboundMappings, inboundTree, inboundTrie, mappingsById,
+                OutboundFilterIndex.build(mappingsById.values()));
+    }
+
+    /**
+     * Create a new snapshot without the outbound mapping
+     */
+    public MappingSnapshot withoutOutboundMapping(Mapping mapping) {
+        if (!outboundMappings.containsKey(mapping.id)) {
+            return this;
+        }
+        Map<String, Mapping> mappingsById = new LinkedHashMap<>(outboundMappings);
+        mappingsById.remove(mapping.id);
+        return new MappingSnapshot(tenant, inboundMappings, inboundTree, inboundTrie, mappingsById,
+                outboundIndex.withoutMapping(mapping));
+    }
+
+    public List<Mapping> getMappings() {
+        List<Mapping> mappings = new ArrayList<>(inboundMappings.size() + outboundMappings.size());
+        mappings.addAll(inboundMappings.values());
+        mappings.addAll(outboundMappings.values());
+        return mappings;
+    }
+
+    public Mapping getMapping(String id) {
+        Mapping mapping = inboundMappings.get(id);
+        return mapping != null ? mapping : outboundMappings.get(id);
+    }
+
+    private MappingSnapshot withInboundMappings(Map<String, Mapping> mappingsById) {
+        return new MappingSnapshot(tenant, mappingsById, buildTree(tenant, mappingsById.values()),
+                MappingTopicTrie.build(mappingsById.values()), outboundMappings, outboundIndex);
+    }
+
+    private static MappingTreeNode buildTree(String tenant, Collection<Mapping> mappings) {
+        MappingTreeNode tree = MappingTreeNode.createRootNode(tenant);
+        for (Mapping mapping : mappings) {
+            try {
+                tree.addMapping(mapping);
+            } catch (ResolveException e) {
+                log.error("Tenant {} - Could not add mapping {}, ignoring mapping", tenant, mapping);
+            }
+        }
+        return tree;
+    }
+
+    private static Map<String, Mapping> byId(Collection<Mapping> mappings) {
+        Map<String, Mapping> mappingsById = new LinkedHashMap<>();
+        for (Mapping mapping : mappings) {
+            mappingsById.put(mapping.id, mapping);
+        }
+        return mappingsById;
+    }
+}
@@ -28,6 +28,7 @@ import lombok.ToString;
 
 import javax.validation.constraints.NotNull;
 import java.io.Serializable;
+import java.util.Map;
 
 @Getter
 @NoArgsConstructor
@@ -41,7 +42,7 @@ public class MappingStatus implements Serializable {
   static {
     UNSPECIFIED_MAPPING_STATUS = new MappingStatus(IDENT_UNSPECIFIED_MAPPING, IDENT_UNSPECIFIED_MAPPING,
         IDENT_UNSPECIFIED_MAPPING, IDENT_UNSPECIFIED_MAPPING, "#", "#", 0, 0, 0,
-        0);
+        0, 0, 0, null);
   }
 
   @NotNull
@@ -74,6 +75,15 @@ public class MappingStatus implements Serializable {
   @NotNull
   public long snoopedTemplatesTotal;
 
+  @NotNull
+  public long bytesProcessed;
+
+  @NotNull
+  public long requestsSent;
+
+  // latency per processing stage, see ProcessingStage
+  public Map<String, StageLatency> latency;
+
   @Override
   public boolean equals(Object m) {
     return (m instanceof MappingStatus) && id == ((MappingStatus) m).id;
@@ -84,5 +94,8 @@ public class MappingStatus implements Serializable {
     errors = 0;
     snoopedTemplatesActive = 0;
     snoopedTemplatesTotal = 0;
+    bytesProcessed = 0;
+    requestsSent = 0;
+    latency = null;
   }
 }
\ No newline at end of file
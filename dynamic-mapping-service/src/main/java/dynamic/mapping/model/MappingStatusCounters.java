@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2022 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @authors Christof Strack, Stefan Witschel
+ */
+
+package dynamic.mapping.model;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.CountAtBucket;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+
+/**
+ * MappingStatusCounters
+ * 
+ * Live counters of a mapping, updated concurrently by the tasks processing the
+ * messages of the mapping. The counters are striped <code>LongAdder</code>s, so
+ * increments are neither lost nor contended. A consistent copy for monitoring
+ * is created with <code>snapshot()</code>.
+ * The latencies are additionally recorded in the histograms of the mapping,
+ * their percentiles are part of the snapshot.
+ */
+public class MappingStatusCounters {
+
+    private final String id;
+
+    private final String ident;
+
+    private final String direction;
+
+    private final String subscriptionTopic;
+
+    private final String publishTopic;
+
+    private volatile String name;
+
+    private final LongAdder messagesReceived = new LongAdder();
+
+    private final LongAdder errors = new LongAdder();
+
+    private final LongAdder snoopedTemplatesActive = new LongAdder();
+
+    private volatile long snoopedTemplatesTotal;
+
+    private final LongAdder bytesProcessed = new LongAdder();
+
+    private final LongAdder requestsSent = new LongAdder();
+
+    private final Map<ProcessingStage, StageCounter> stages = new EnumMap<>(ProcessingStage.class);
+
+    // structure: <stage, histogram>
+    private final Map<ProcessingStage, Timer> timers;
+
+    private static class StageCounter {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        private void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+        }
+
+        private StageLatency snapshot(Timer timer) {
+            long c = count.sum();
+            double mean = c == 0 ? 0 : totalNanos.sum() / (double) c / 1_000_000d;
+            StageLatency latency = new StageLatency(c, mean, maxNanos.get() / 1_000_000d, null, null, null);
+            if (timer != null) {
+                HistogramSnapshot histogram = timer.takeSnapshot();
+                latency.p50 = estimatePercentile(histogram, 0.5);
+                latency.p95 = estimatePercentile(histogram, 0.95);
+                latency.p99 = estimatePercentile(histogram, 0.99);
+            }
+            return latency;
+        }
+
+        // upper bound of the first bucket containing the percentile, the bucket counts
+        // are cumulative
+        private static Double estimatePercentile(HistogramSnapshot histogram, double percentile) {
+            if (histogram.count() == 0) {
+                return null;
+            }
+            double rank = percentile * histogram.count();
+            for (CountAtBucket bucket : histogram.histogramCounts()) {
+                if (bucket.count() >= rank) {
+                    return bucket.bucket(TimeUnit.MILLISECONDS);
+                }
+            }
+            return histogram.max(TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public MappingStatusCounters(Mapping mapping, Map<ProcessingStage, Timer> timers) {
+        this(mapping.id, mapping.name, mapping.ident, mapping.direction == null ? null : mapping.direction.name(),
+                mapping.subscriptionTopic, mapping.publishTopic, timers);
+    }
+
+    /**
+     * Create counters continuing from a status, e.g. restored from the inventory
+     */
+    public MappingStatusCounters(MappingStatus status, Map<ProcessingStage, Timer> timers) {
+        this(status.id, status.name, status.ident, status.direction, status.subscriptionTopic,
+                status.publishTopic, timers);
+        messagesReceived.add(status.messagesReceived);
+        errors.add(status.errors);
+        snoopedTemplatesActive.add(status.snoopedTemplatesActive);
+        snoopedTemplatesTotal = status.snoopedTemplatesTotal;
+        bytesProcessed.add(status.bytesProcessed);
+        requestsSent.add(status.requestsSent);
+    }
+
+    private MappingStatusCounters(String id, String name, String ident, String direction, String subscriptionTopic,
+            String publishTopic, Map<ProcessingStage, Timer> timers) {
+        this.id = id;
+        this.name = name;
+        this.ident = ident;
+        this.direction = direction;
+        this.subscriptionTopic = subscriptionTopic;
+        this.publishTopic = publishTopic;
+        this.timers = timers == null ? Collections.emptyMap() : timers;
+        for (ProcessingStage stage : ProcessingStage.values()) {
+            stages.put(stage, new StageCounter());
+        }
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getIdent() {
+        return ident;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public void incrementMessagesReceived() {
+        messagesReceived.increment();
+    }
+
+    public void incrementErrors() {
+        errors.increment();
+    }
+
+    public void incrementSnoopedTemplatesActive() {
+        snoopedTemplatesActive.increment();
+    }
+
+    public void setSnoopedTemplatesTotal(long snoopedTemplatesTotal) {
+        this.snoopedTemplatesTotal = snoopedTemplatesTotal;
+    }
+
+    public void addBytesProcessed(long bytes) {
+        bytesProcessed.add(bytes);
+    }
+
+    public void addRequestsSent(long requests) {
+        requestsSent.add(requests);
+    }
+
+    public void recordLatency(ProcessingStage stage, long nanos) {
+        stages.get(stage).record(nanos);
+        Timer timer = timers.get(stage);
+        if (timer != null) {
+            timer.record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public MappingStatus snapshot() {
+        MappingStatus status = new MappingStatus();
+        status.id = id;
+        status.name = name;
+        status.ident = ident;
+        status.direction = direction;
+        status.subscriptionTopic = subscriptionTopic;
+        status.publishTopic = publishTopic;
+        status.messagesReceived = messagesReceived.sum();
+        status.errors = errors.sum();
+        status.snoopedTemplatesActive = snoopedTemplatesActive.sum();
+        status.snoopedTemplatesTotal = snoopedTemplatesTotal;
+        status.bytesProcessed = bytesProcessed.sum();
+        status.requestsSent = requestsSent.sum();
+        Map<String, StageLatency> latency = new HashMap<>();
+        stages.forEach((stage, counter) -> latency.put(stage.name(), counter.snapshot(timers.get(stage))));
+        status.latency = latency;
+        return status;
+    }
+}
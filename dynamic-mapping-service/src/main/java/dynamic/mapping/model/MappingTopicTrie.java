@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2022 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @authors Christof Strack, Stefan Witschel
+ */
+
+package dynamic.mapping.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MappingTopicTrie
+ * 
+ * Immutable trie of the inbound mappings, used to resolve the mappings for the
+ * topic of an inbound message. The levels of the <code>mappingTopic</code> are
+ * stored as nodes, with the MQTT semantics for wildcards:
+ * <ul>
+ * <li><code>+</code> matches exactly one level, which can be empty</li>
+ * <li><code>#</code> matches any number of levels including none, i.e.
+ * <code>a/#</code> matches <code>a</code>, <code>a/</code> and
+ * <code>a/b/c</code></li>
+ * <li>topics starting with <code>$</code> are not matched by a wildcard on the
+ * first level</li>
+ * </ul>
+ * A topic is matched by scanning it for separators, without splitting it into
+ * levels. Changes create a new trie from the mapping set (copy-on-write), so a
+ * trie can be shared by concurrent readers without locking.
+ */
+public final class MappingTopicTrie {
+
+    private static final char SEPARATOR = '/';
+
+    private static final Mapping[] NO_MAPPINGS = new Mapping[0];
+
+    private static final MappingTopicTrie EMPTY = new MappingTopicTrie(Collections.emptyMap());
+
+    // structure: <mappingId, mapping>
+    private final Map<String, Mapping> mappings;
+
+    private final Node root;
+
+    private MappingTopicTrie(Map<String, Mapping> mappings) {
+        this.mappings = Collections.unmodifiableMap(mappings);
+        NodeBuilder rootBuilder = new NodeBuilder();
+        for (Mapping mapping : mappings.values()) {
+            String topic = getTopic(mapping);
+            if (topic != null) {
+                rootBuilder.add(topic, mapping);
+            }
+        }
+        this.root = rootBuilder.build();
+    }
+
+    public static MappingTopicTrie empty() {
+        return EMPTY;
+    }
+
+    public static MappingTopicTrie build(Collection<Mapping> mappings) {
+        Map<String, Mapping> mappingsById = new LinkedHashMap<>();
+        for (Mapping mapping : mappings) {
+            mappingsById.put(mapping.id, mapping);
+        }
+        return new MappingTopicTrie(mappingsById);
+    }
+
+    /**
+     * Create a new trie containing the mapping, an existing mapping with the same
+     * id is replaced
+     */
+    public MappingTopicTrie withMapping(Mapping mapping) {
+        Map<String, Mapping> mappingsById = new LinkedHashMap<>(mappings);
+        mappingsById.put(mapping.id, mapping);
+        return new MappingTopicTrie(mappingsById);
+    }
+
+    /**
+     * Create a new trie without the mapping
+     */
+    public MappingTopicTrie withoutMapping(Mapping mapping) {
+        if (!mappings.containsKey(mapping.id)) {
+            return this;
+        }
+        Map<String, Mapping> mappingsById = new LinkedHashMap<>(mappings);
+        mappingsById.remove(mapping.id);
+        return new MappingTopicTrie(mappingsById);
+    }
+
+    public int size() {
+        return mappings.size();
+    }
+
+    public List<Mapping> resolve(String topic) {
+        List<Mapping> result = new ArrayList<>();
+        boolean systemTopic = topic.length() > 0 && topic.charAt(0) == '$';
+        match(root, topic, 0, systemTopic, result);
+        return result;
+    }
+
+    private static void match(Node node, String topic, int start, boolean skipWildcards, List<Mapping> result) {
+        if (!skipWildcards) {
+            addAll(result, node.multiLevelMappings);
+        }
+        // start < 0 indicates that all levels of the topic are consumed
+        if (start < 0) {
+            addAll(result, node.mappings);
+            return;
+        }
+        int separator = topic.indexOf(SEPARATOR, start);
+        int end = separator < 0 ? topic.length() : separator;
+        int next = separator < 0 ? -1 : separator + 1;
+        Node child = node.getChild(topic, start, end);
+        if (child != null) {
+            match(child, topic, next, false, result);
+        }
+        if (node.singleLevelChild != null && !skipWildcards) {
+            match(node.singleLevelChild, topic, next, false, result);
+        }
+    }
+
+    private static void addAll(List<Mapping> result, Mapping[] mappings) {
+        for (Mapping mapping : mappings) {
+            result.add(mapping);
+        }
+    }
+
+    private static String getTopic(Mapping mapping) {
+        String topic = mapping.mappingTopic;
+        // if mappingTopic is not set use topic instead
+        if (topic == null || topic.equals("")) {
+            topic = mapping.subscriptionTopic;
+        }
+        return topic;
+    }
+
+    private static int hash(String value, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + value.charAt(i);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Node {
+        // literal levels stored in an open addressing table, so that a level can be
+        // looked up by its position in the topic
+        private final String[] levels;
+        private final Node[] children;
+        private final int mask;
+        private final Node singleLevelChild;
+        // mappings ending at this node
+        private final Mapping[] mappings;
+        // mappings ending with "#" after this node
+        private final Mapping[] multiLevelMappings;
+
+        private Node(Map<String, Node> literalChildren, Node singleLevelChild, Mapping[] mappings,
+                Mapping[] multiLevelMappings) {
+            if (literalChildren.isEmpty()) {
+                this.levels = null;
+                this.children = null;
+                this.mask = 0;
+            } else {
+                int capacity = Integer.highestOneBit(literalChildren.size() * 2 - 1) << 1;
+                this.levels = new String[capacity];
+                this.children = new Node[capacity];
+                this.mask = capacity - 1;
+                for (Map.Entry<String, Node> entry : literalChildren.entrySet()) {
+                    int i = hash(entry.getKey(), 0, entry.getKey().length()) & mask;
+                    while (levels[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    levels[i] = entry.getKey();
+                    children[i] = entry.getValue();
+                }
+            }
+            this.singleLevelChild = singleLevelChild;
+            this.mappings = mappings;
+            this.multiLevelMappings = multiLevelMappings;
+        }
+
+        private Node getChild(String topic, int start, int end) {
+            if (levels == null) {
+                return null;
+            }
+            int length = end - start;
+            int i = hash(topic, start, end) & mask;
+            String level;
+            while ((level = levels[i]) != null) {
+                if (level.length() == length && level.regionMatches(0, topic, start, length)) {
+                    return children[i];
+                }
+                i = (i + 1) & mask;
+            }
+            return null;
+        }
+    }
+
+    private static final class NodeBuilder {
+        private final Map<String, NodeBuilder> literalChildren = new LinkedHashMap<>();
+        private NodeBuilder singleLevelChild;
+        private final List<Mapping> mappings = new ArrayList<>();
+        private final List<Mapping> multiLevelMappings = new ArrayList<>();
+
+        private void add(String topic, Mapping mapping) {
+            NodeBuilder node = this;
+            int start = 0;
+            while (true) {
+                int separator = topic.indexOf(SEPARATOR, start);
+                int end = separator < 0 ? topic.length() : separator;
+                String level = topic.substring(start, end);
+                if (MappingRepresentation.TOPIC_WILDCARD_MULTI.equals(level)) {
+                    // "#" must be the last level, ignore any following levels
+                    node.multiLevelMappings.add(mapping);
+                    return;
+                } else if (MappingRepresentation.TOPIC_WILDCARD_SINGLE.equals(level)) {
+                    if (node.singleLevelChild == null) {
+                        node.singleLevelChild = new NodeBuilder();
+                    }
+                    node = node.singleLevelChild;
+                } else {
+                    node = node.literalChildren.computeIfAbsent(level, l -> new NodeBuilder());
+                }
+                if (separator < 0) {
+                    node.mappings.add(mapping);
+                    return;
+                }
+                start = separator + 1;
+            }
+        }
+
+        private Node build() {
+            Map<String, Node> children = new LinkedHashMap<>();
+            literalChildren.forEach((level, child) -> children.put(level, child.build()));
+            return new Node(children, singleLevelChild == null ? null : singleLevelChild.build(),
+                    mappings.toArray(NO_MAPPINGS), multiLevelMappings.toArray(NO_MAPPINGS));
+        }
+    }
+}
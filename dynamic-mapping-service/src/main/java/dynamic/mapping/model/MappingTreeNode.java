@@ -99,10 +99,12 @@ public class MappingTreeNode {
     }
 
     public List<MappingTreeNode> resolveTopicPath(List<String> remainingLevels) throws ResolveException {
-        Set<String> set = childNodes.keySet();
-        String joinedSet = String.join(",", set);
-        String joinedPath = String.join("", remainingLevels);
-        log.debug("Tenant {} - Trying to resolve: '{}' in [{}]", tenant, joinedPath, joinedSet);
+        if (log.isDebugEnabled()) {
+            Set<String> set = childNodes.keySet();
+            String joinedSet = String.join(",", set);
+            String joinedPath = String.join("", remainingLevels);
+            log.debug("Tenant {} - Trying to resolve: '{}' in [{}]", tenant, joinedPath, joinedSet);
+        }
         List<MappingTreeNode> results = new ArrayList<MappingTreeNode>();
         if (remainingLevels.size() >= 1) {
             String currentLevel = remainingLevels.get(0);
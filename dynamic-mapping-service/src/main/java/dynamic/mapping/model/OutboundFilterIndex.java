@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2022 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @authors Christof Strack, Stefan Witschel
+ */
+
+package dynamic.mapping.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * OutboundFilterIndex
+ * 
+ * Immutable index of the outbound mappings, used to resolve the mappings for a
+ * notification from Cumulocity. The <code>filterOutbound</code> of every
+ * mapping is compiled once into a <code>JsonPointer</code> and the mappings are
+ * indexed by <code>targetAPI</code> and the top-level fragment of the filter.
+ * A notification is matched in one pass over its top-level fragments, the
+ * remaining part of the pointer is only evaluated for mappings that share the
+ * fragment.
+ * Changes create a new index (copy-on-write), so an index can be shared by
+ * concurrent readers without locking.
+ * A mapping with an invalid filter is not indexed and never resolved.
+ */
+@Slf4j
+public final class OutboundFilterIndex {
+
+    private static final Filter[] NO_FILTERS = new Filter[0];
+
+    private static final OutboundFilterIndex EMPTY = new OutboundFilterIndex(Collections.emptyMap());
+
+    // structure: <mappingId, mapping>
+    private final Map<String, Mapping> mappings;
+
+    // structure: <targetAPI, <fragment, filters>>
+    private final Map<API, Map<String, Filter[]>> filters;
+
+    private static final class Filter {
+        private final Mapping mapping;
+        // pointer relative to the fragment, null if the fragment alone matches
+        private final JsonPointer tail;
+
+        private Filter(Mapping mapping, JsonPointer tail) {
+            this.mapping = mapping;
+            this.tail = tail;
+        }
+    }
+
+    private OutboundFilterIndex(Map<String, Mapping> mappings) {
+        this.mappings = Collections.unmodifiableMap(mappings);
+        Map<API, Map<String, List<Filter>>> builder = new EnumMap<>(API.class);
+        for (Mapping mapping : mappings.values()) {
+            if (mapping.targetAPI == null || mapping.filterOutbound == null) {
+                continue;
+            }
+            JsonPointer pointer;
+            try {
+                // JsonPointer must begin with "/"
+                pointer = JsonPointer.compile("/" + mapping.filterOutbound.replace('.', '/'));
+            } catch (IllegalArgumentException e) {
+                log.warn("Ignoring outbound mapping {} with invalid filter '{}': {}", mapping.name,
+                        mapping.filterOutbound, e.getMessage());
+                continue;
+            }
+            JsonPointer tail = pointer.tail();
+            builder.computeIfAbsent(mapping.targetAPI, api -> new HashMap<>())
+                    .computeIfAbsent(pointer.getMatchingProperty(), fragment -> new ArrayList<>())
+                    .add(new Filter(mapping, tail == null || tail.matches() ? null : tail));
+        }
+        Map<API, Map<String, Filter[]>> index = new EnumMap<>(API.class);
+        builder.forEach((api, byFragment) -> {
+            Map<String, Filter[]> compiled = new HashMap<>();
+            byFragment.forEach((fragment, list) -> compiled.put(fragment, list.toArray(NO_FILTERS)));
+            index.put(api, compiled);
+        });
+        this.filters = index;
+    }
+
+    public static OutboundFilterIndex empty() {
+        return EMPTY;
+    }
+
+    public static OutboundFilterIndex build(Collection<Mapping> mappings) {
+        Map<String, Mapping> mappingsById = new LinkedHashMap<>();
+        for (Mapping mapping : mappings) {
+            mappingsById.put(mapping.id, mapping);
+        }
+        return new OutboundFilterIndex(mappingsById);
+    }
+
+    /**
+     * Create a new index without the mapping
+     */
+    public OutboundFilterIndex withoutMapping(Mapping mapping) {
+        if (!mappings.containsKey(mapping.id)) {
+            return this;
+        }
+        Map<String, Mapping> mappingsById = new LinkedHashMap<>(mappings);
+        mappingsById.remove(mapping.id);
+        return new OutboundFilterIndex(mappingsById);
+    }
+
+    public int size() {
+        return mappings.size();
+    }
+
+    public List<Mapping> resolve(JsonNode message, API api) {
+        List<Mapping> result = new ArrayList<>();
+        Map<String, Filter[]> byFragment = filters.get(api);
+        if (byFragment == null || message == null || !message.isObject()) {
+            return result;
+        }
+        Iterator<Map.Entry<String, JsonNode>> fragments = message.fields();
+        while (fragments.hasNext()) {
+            Map.Entry<String, JsonNode> fragment = fragments.next();
+            Filter[] candidates = byFragment.get(fragment.getKey());
+            if (candidates == null) {
+                continue;
+            }
+            for (Filter filter : candidates) {
+                if (filter.tail == null || !fragment.getValue().at(filter.tail).isMissingNode()) {
+                    result.add(filter.mapping);
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2022 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @authors Christof Strack, Stefan Witschel
+ */
+
+package dynamic.mapping.model;
+
+/**
+ * Stages of the processing pipeline of a mapping, used to record the latency of
+ * every stage.
+ */
+public enum ProcessingStage {
+    // deserialize the payload of the message
+    DESERIALIZE,
+    // extract the content from the payload based on the substitutions
+    EXTRACT,
+    // substitute the extracted content in the target template, including the
+    // resolution of the device identity
+    SUBSTITUTE,
+    // resolve the identity of the device, inbound part of SUBSTITUTE, outbound
+    // part of EXTRACT
+    RESOLVE_IDENTITY,
+    // send the target payloads, inbound until all requests to Cumulocity are
+    // completed, outbound including the substitution and the publish to the broker
+    SEND
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2022 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @authors Christof Strack, Stefan Witschel
+ */
+
+package dynamic.mapping.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import javax.validation.constraints.NotNull;
+
+import dynamic.mapping.configuration.RejectionPolicy;
+
+import java.io.Serializable;
+
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString()
+public class WorkerPoolStatus implements Serializable {
+
+  @NotNull
+  public String connectorIdent;
+
+  @NotNull
+  public RejectionPolicy rejectionPolicy;
+
+  @NotNull
+  public int poolSize;
+
+  @NotNull
+  public int activeWorkers;
+
+  @NotNull
+  public int queueSize;
+
+  @NotNull
+  public int queueCapacity;
+
+  @NotNull
+  public long completed;
+
+  @NotNull
+  public long dropped;
+
+  @NotNull
+  public long spilled;
+}
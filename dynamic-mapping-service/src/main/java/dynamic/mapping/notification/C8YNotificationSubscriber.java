@@ -41,6 +41,7 @@ import com.hivemq.client.mqtt.mqtt3.Mqtt3BlockingClient;
 import com.hivemq.client.mqtt.mqtt3.Mqtt3Client;
 import com.hivemq.client.mqtt.mqtt3.Mqtt3ClientBuilder;
 import com.hivemq.client.mqtt.mqtt3.message.auth.Mqtt3SimpleAuth;
+import dynamic.mapping.configuration.ServiceConfiguration;
 import dynamic.mapping.core.ConfigurationRegistry;
 import dynamic.mapping.core.ConnectorStatus;
 import dynamic.mapping.model.API;
@@ -519,7 +520,12 @@ public class C8YNotificationSubscriber {
         try {
             String baseUrl = this.baseUrl.replace("http", "ws");
             URI webSocketUrl = new URI(baseUrl + WEBSOCKET_PATH + token);
-            final CustomWebSocketClient client = new CustomWebSocketClient(webSocketUrl, callback, tenant);
+            ServiceConfiguration serviceConfiguration = configurationRegistry.getServiceConfigurations().get(tenant);
+            int maxInFlightNotifications = serviceConfiguration != null
+                    ? serviceConfiguration.maxInFlightNotifications
+                    : ServiceConfiguration.DEFAULT_MAX_IN_FLIGHT_NOTIFICATIONS;
+            final CustomWebSocketClient client = new CustomWebSocketClient(webSocketUrl, callback, tenant,
+                    maxInFlightNotifications);
             client.setConnectionLostTimeout(30);
             client.connect();
             configurationRegistry.getC8yAgent().sendNotificationLifecycle(tenant, ConnectorStatus.CONNECTING, null);
@@ -2,12 +2,16 @@ package dynamic.mapping.notification.websocket;
 
 import lombok.extern.slf4j.Slf4j;
 import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.exceptions.WebsocketNotConnectedException;
 import org.java_websocket.handshake.ServerHandshake;
 
 import java.net.URI;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
 @Slf4j
@@ -15,11 +19,19 @@ public class CustomWebSocketClient extends WebSocketClient {
     private final NotificationCallback callback;
     private ScheduledExecutorService executorService = null;
     private String tenant;
+    // notifications passed to the callback, that are not yet acknowledged
+    private final Semaphore inFlightNotifications;
+    // delay of the reconnect to get notifications redelivered, that could not be processed
+    private static final long REDELIVERY_BACKOFF_MS = 5000;
+    // a reconnect to get unacknowledged notifications redelivered is scheduled
+    private final AtomicBoolean redeliveryScheduled = new AtomicBoolean();
 
-    public CustomWebSocketClient(URI serverUri, NotificationCallback callback, String tenant) {
+    public CustomWebSocketClient(URI serverUri, NotificationCallback callback, String tenant,
+            int maxInFlightNotifications) {
         super(serverUri);
         this.callback = callback;
         this.tenant = tenant;
+        this.inFlightNotifications = new Semaphore(Math.max(1, maxInFlightNotifications));
     }
 
     @Override
@@ -33,12 +45,72 @@ public class CustomWebSocketClient extends WebSocketClient {
     @Override
     public void onMessage(String message) {
         Notification notification = Notification.parse(message);
-        this.callback.onNotification(notification);
-        if (notification.getAckHeader() != null) {
-            send(notification.getAckHeader()); // ack message
-        } else {
+        if (notification.getAckHeader() == null) {
             throw new RuntimeException("No message id found for ack");
         }
+        // stop reading from the websocket while the window is full, so a slow broker pushes back
+        // on the notification stream
+        try {
+            while (!inFlightNotifications.tryAcquire(1, TimeUnit.SECONDS)) {
+                if (!isOpen()) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        CompletableFuture<?> completion;
+        try {
+            completion = this.callback.onNotification(notification);
+        } catch (RuntimeException e) {
+            inFlightNotifications.release();
+            throw e;
+        }
+        if (completion == null) {
+            completion = CompletableFuture.completedFuture(null);
+        }
+        completion.whenComplete((result, error) -> {
+            inFlightNotifications.release();
+            if (error == null) {
+                acknowledge(notification);
+            } else {
+                log.warn("Tenant {} - Notification not acknowledged, it is redelivered after reconnect: {}",
+                        tenant, error.getMessage());
+                requestRedelivery();
+            }
+        });
+    }
+
+    /**
+     * Unacknowledged notifications are only redelivered after the websocket is
+     * reconnected, so it is reconnected after a backoff.
+     */
+    private void requestRedelivery() {
+        if (!redeliveryScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        CompletableFuture.delayedExecutor(REDELIVERY_BACKOFF_MS, TimeUnit.MILLISECONDS).execute(() -> {
+            redeliveryScheduled.set(false);
+            if (!isOpen()) {
+                // the subscriber reconnects closed websockets
+                return;
+            }
+            log.info("Tenant {} - Reconnecting websocket to get unacknowledged notifications redelivered", tenant);
+            try {
+                reconnect();
+            } catch (Exception e) {
+                log.warn("Tenant {} - Error reconnecting websocket: {}", tenant, e.getMessage());
+            }
+        });
+    }
+
+    private void acknowledge(Notification notification) {
+        try {
+            send(notification.getAckHeader()); // ack message
+        } catch (WebsocketNotConnectedException e) {
+            log.debug("Tenant {} - WebSocket closed before notification was acknowledged", tenant);
+        }
     }
 
     @Override
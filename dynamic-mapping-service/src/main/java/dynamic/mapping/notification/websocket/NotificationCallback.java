@@ -1,6 +1,7 @@
 package dynamic.mapping.notification.websocket;
 
 import java.net.URI;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Implement this interface to handle notifications.
@@ -14,10 +15,12 @@ public interface NotificationCallback {
     void onOpen(URI serverUri);
 
     /**
-     * Called on receiving a notification. The notification will be acknowledged if no exception raised.
+     * Called on receiving a notification. The notification will be acknowledged when the returned future completes
+     * successfully, a notification that is not acknowledged is redelivered after reconnecting.
      * @param notification the notification received.
+     * @return future completed when the notification is processed, or null if it was processed synchronously.
      */
-    void onNotification(Notification notification);
+    CompletableFuture<?> onNotification(Notification notification);
 
     /**
      * Called on receiving an exception from the WebSocket connection. This may be whilst actively connected or during connection/disconnection.
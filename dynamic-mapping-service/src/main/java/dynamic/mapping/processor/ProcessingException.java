@@ -25,4 +25,8 @@ public class ProcessingException extends Exception {
     public ProcessingException(String string) {
         super(string);
     }
+
+    public ProcessingException(String string, Throwable cause) {
+        super(string, cause);
+    }
 }
\ No newline at end of file
@@ -24,7 +24,8 @@ package dynamic.mapping.processor.inbound;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import dynamic.mapping.model.Mapping;
-import dynamic.mapping.model.MappingStatus;
+import dynamic.mapping.model.MappingStatusCounters;
+import dynamic.mapping.model.ProcessingStage;
 import lombok.extern.slf4j.Slf4j;
 import dynamic.mapping.configuration.ServiceConfiguration;
 import dynamic.mapping.connector.core.callback.ConnectorMessage;
@@ -33,6 +34,8 @@ import dynamic.mapping.connector.core.client.AConnectorClient;
 import dynamic.mapping.core.C8YAgent;
 import dynamic.mapping.core.ConfigurationRegistry;
 import dynamic.mapping.core.MappingComponent;
+import dynamic.mapping.core.executor.CompletableFutureTask;
+import dynamic.mapping.core.executor.WorkerPool;
 import dynamic.mapping.model.SnoopStatus;
 import dynamic.mapping.processor.model.C8YRequest;
 import dynamic.mapping.processor.model.MappingType;
@@ -40,11 +43,13 @@ import dynamic.mapping.processor.model.ProcessingContext;
 import org.apache.commons.codec.binary.Hex;
 
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * AsynchronousDispatcherInbound
@@ -53,10 +58,16 @@ import java.util.concurrent.Future;
  * registered as a listener when new messages arrive.
  * It processes INBOUND messages and works asynchronously.
  * A task <code>GenericMessageCallback.MappingInboundTask</code> is added the
- * ExecutorService, to not block new arriving messages.
+ * bounded <code>WorkerPool</code> of the connector, to not block new arriving
+ * messages. When the pool is saturated the configured
+ * <code>RejectionPolicy</code> is applied.
  * The call method in
  * <code>AsynchronousDispatcherInbound.MappingInboundTask</code> is the core of
  * the message processing.
+ * The resolved mappings are independent of each other, they are extracted
+ * concurrently on the bounded fan-out pool of the <code>WorkerPool</code> and
+ * the requests of all mappings are in flight concurrently. The payload is
+ * deserialized once for the mappings of the same <code>MappingType</code>.
  * For all resolved mappings the following steps are performed for new
  * messages:
  * ** deserialize the payload
@@ -72,7 +83,7 @@ public class AsynchronousDispatcherInbound implements GenericMessageCallback {
 
     private AConnectorClient connectorClient;
 
-    private ExecutorService cachedThreadPool;
+    private WorkerPool workerPool;
 
     private MappingComponent mappingComponent;
 
@@ -81,13 +92,14 @@ public class AsynchronousDispatcherInbound implements GenericMessageCallback {
     public AsynchronousDispatcherInbound(ConfigurationRegistry configurationRegistry,
             AConnectorClient connectorClient) {
         this.connectorClient = connectorClient;
-        this.cachedThreadPool = configurationRegistry.getCachedThreadPool();
+        this.workerPool = configurationRegistry.createWorkerPool(connectorClient.getTenant(),
+                connectorClient.getConnectorIdent());
         this.mappingComponent = configurationRegistry.getMappingComponent();
         ;
         this.configurationRegistry = configurationRegistry;
     }
 
-    public static class MappingInboundTask<T> implements Callable<List<ProcessingContext<?>>> {
+    public static class MappingInboundTask<T> implements Callable<CompletableFuture<List<ProcessingContext<?>>>> {
         List<Mapping> resolvedMappings;
         Map<MappingType, BasePayloadProcessorInbound<?>> payloadProcessorsInbound;
         ConnectorMessage connectorMessage;
@@ -95,10 +107,12 @@ public class AsynchronousDispatcherInbound implements GenericMessageCallback {
         C8YAgent c8yAgent;
         ObjectMapper objectMapper;
         ServiceConfiguration serviceConfiguration;
+        Executor fanOutExecutor;
 
         public MappingInboundTask(ConfigurationRegistry configurationRegistry, List<Mapping> resolvedMappings,
-                ConnectorMessage message) {
+                ConnectorMessage message, Executor fanOutExecutor) {
             this.resolvedMappings = resolvedMappings;
+            this.fanOutExecutor = fanOutExecutor;
             this.mappingComponent = configurationRegistry.getMappingComponent();
             this.c8yAgent = configurationRegistry.getC8yAgent();
             this.payloadProcessorsInbound = configurationRegistry.getPayloadProcessorsInbound()
@@ -108,115 +122,229 @@ public class AsynchronousDispatcherInbound implements GenericMessageCallback {
             this.serviceConfiguration = configurationRegistry.getServiceConfigurations().get(message.getTenant());
         }
 
+        /**
+         * Processes the message and returns without waiting for the requests sent
+         * to Cumulocity. The returned future completes when all requests are
+         * completed.
+         */
         @Override
-        public List<ProcessingContext<?>> call() throws Exception {
+        public CompletableFuture<List<ProcessingContext<?>>> call() throws Exception {
             String tenant = connectorMessage.getTenant();
-            String topic = connectorMessage.getTopic();
-            boolean sendPayload = connectorMessage.isSendPayload();
 
             List<ProcessingContext<?>> processingResult = new ArrayList<>();
-            MappingStatus mappingStatusUnspecified = mappingComponent
+            List<CompletableFuture<?>> pendingMappings = new ArrayList<>();
+            MappingStatusCounters mappingStatusUnspecified = mappingComponent
                     .getMappingStatus(tenant, Mapping.UNSPECIFIED_MAPPING);
+            // only process active mappings
+            List<Mapping> activeMappings = new ArrayList<>();
             resolvedMappings.forEach(mapping -> {
-                // only process active mappings
                 if (mapping.isActive()) {
-                    MappingStatus mappingStatus = mappingComponent.getMappingStatus(tenant, mapping);
+                    activeMappings.add(mapping);
+                }
+            });
+            Map<MappingType, SharedPayload> sharedPayloads = deserializeSharedPayloads(activeMappings);
+            for (int i = 0; i < activeMappings.size(); i++) {
+                Mapping mapping = activeMappings.get(i);
+                ProcessingContext<?> context = createContext(mapping);
+                processingResult.add(context);
+                SharedPayload sharedPayload = sharedPayloads.get(mapping.mappingType);
+                if (i < activeMappings.size() - 1) {
+                    // the mappings are extracted concurrently on the bounded fan-out pool, or on
+                    // this worker when the pool is busy
+                    CompletableFuture<CompletableFuture<Void>> extraction = CompletableFuture.supplyAsync(
+                            () -> processMapping(mapping, context, sharedPayload, mappingStatusUnspecified),
+                            fanOutExecutor);
+                    pendingMappings.add(extraction.thenCompose(pendingRequests -> pendingRequests));
+                } else {
+                    // the last mapping is extracted by this worker
+                    pendingMappings.add(processMapping(mapping, context, sharedPayload, mappingStatusUnspecified));
+                }
+            }
+            // the requests of all mappings are in flight concurrently, the processing
+            // completes when all of them are completed
+            return CompletableFuture.allOf(pendingMappings.toArray(new CompletableFuture<?>[0]))
+                    .thenApply(v -> processingResult);
+        }
+
+        /**
+         * Deserializes the payload once for every <code>MappingType</code> used by
+         * several mappings of the message. The payload is shared read-only by these
+         * mappings. A payload used by a single mapping is deserialized for the
+         * mapping, so that the streaming extraction of the mapping can be applied.
+         */
+        private Map<MappingType, SharedPayload> deserializeSharedPayloads(List<Mapping> activeMappings) {
+            Map<MappingType, Integer> mappingsPerType = new EnumMap<>(MappingType.class);
+            activeMappings.forEach(mapping -> mappingsPerType.merge(mapping.mappingType, 1, Integer::sum));
+            Map<MappingType, SharedPayload> sharedPayloads = new EnumMap<>(MappingType.class);
+            mappingsPerType.forEach((mappingType, count) -> {
+                BasePayloadProcessorInbound processor = payloadProcessorsInbound.get(mappingType);
+                if (count < 2 || processor == null) {
+                    return;
+                }
+                ProcessingContext<?> context = new ProcessingContext<>();
+                context.setTopic(connectorMessage.getTopic());
+                context.setMappingType(mappingType);
+                context.setTenant(connectorMessage.getTenant());
+                context.setServiceConfiguration(serviceConfiguration);
+                long start = System.nanoTime();
+                try {
+                    processor.deserializePayload(context, connectorMessage);
+                    sharedPayloads.put(mappingType,
+                            new SharedPayload(context.getPayload(), null, System.nanoTime() - start));
+                } catch (Exception e) {
+                    sharedPayloads.put(mappingType, new SharedPayload(null, e, System.nanoTime() - start));
+                }
+            });
+            return sharedPayloads;
+        }
+
+        private ProcessingContext<?> createContext(Mapping mapping) {
+            ProcessingContext<?> context;
+            if (mapping.mappingType.payloadType.equals(String.class)) {
+                context = new ProcessingContext<String>();
+            } else {
+                context = new ProcessingContext<byte[]>();
+            }
+            context.setTopic(connectorMessage.getTopic());
+            context.setMappingType(mapping.mappingType);
+            context.setMapping(mapping);
+            context.setSendPayload(connectorMessage.isSendPayload());
+            context.setTenant(connectorMessage.getTenant());
+            context.setSupportsMessageContext(connectorMessage.isSupportsMessageContext() && mapping.supportsMessageContext);
+            context.setKey(connectorMessage.getKey());
+            context.setServiceConfiguration(serviceConfiguration);
+            return context;
+        }
+
+        /**
+         * Processes the message for one mapping and returns a future, that completes
+         * when the requests of the mapping are completed.
+         */
+        private CompletableFuture<Void> processMapping(Mapping mapping, ProcessingContext<?> context,
+                SharedPayload sharedPayload, MappingStatusCounters mappingStatusUnspecified) {
+            String tenant = connectorMessage.getTenant();
+            boolean sendPayload = connectorMessage.isSendPayload();
+            CompletableFuture<Void> pendingRequests = CompletableFuture.completedFuture(null);
+            MappingStatusCounters mappingStatus = mappingComponent.getMappingStatus(tenant, mapping);
+
+            // identify the correct processor based on the mapping type
+            MappingType mappingType = context.getMappingType();
+            BasePayloadProcessorInbound processor = payloadProcessorsInbound.get(mappingType);
 
-                    ProcessingContext<?> context;
-                    if (mapping.mappingType.payloadType.equals(String.class)) {
-                        context = new ProcessingContext<String>();
+            if (processor != null) {
+                try {
+                    long start = System.nanoTime();
+                    if (sharedPayload == null) {
+                        processor.deserializePayload(context, connectorMessage);
+                        mappingStatus.recordLatency(ProcessingStage.DESERIALIZE, System.nanoTime() - start);
                     } else {
-                        context = new ProcessingContext<byte[]>();
+                        if (sharedPayload.error != null) {
+                            throw sharedPayload.error;
+                        }
+                        ((ProcessingContext) context).setPayload(sharedPayload.payload);
+                        mappingStatus.recordLatency(ProcessingStage.DESERIALIZE, sharedPayload.nanos);
                     }
-                    context.setTopic(topic);
-                    context.setMappingType(mapping.mappingType);
-                    context.setMapping(mapping);
-                    context.setSendPayload(sendPayload);
-                    context.setTenant(tenant);
-                    context.setSupportsMessageContext(connectorMessage.isSupportsMessageContext() && mapping.supportsMessageContext);
-                    context.setKey(connectorMessage.getKey());
-                    context.setServiceConfiguration(serviceConfiguration);
-                    // identify the correct processor based on the mapping type
-                    MappingType mappingType = context.getMappingType();
-                    BasePayloadProcessorInbound processor = payloadProcessorsInbound.get(mappingType);
-
-                    if (processor != null) {
-                        try {
-                            processor.deserializePayload(context, connectorMessage);
-                            if (serviceConfiguration.logPayload || mapping.debug) {
-                                log.info("Tenant {} - New message on topic: '{}', wrapped message: {}", tenant,
-                                        context.getTopic(),
-                                        context.getPayload().toString());
-                            } else {
-                                log.info("Tenant {} - New message on topic: '{}'", tenant, context.getTopic());
-                            }
-                            mappingStatus.messagesReceived++;
-                            if (mapping.snoopStatus == SnoopStatus.ENABLED
-                                    || mapping.snoopStatus == SnoopStatus.STARTED) {
-                                String serializedPayload = null;
-                                if (context.getPayload() instanceof JsonNode) {
-                                    serializedPayload = objectMapper
-                                            .writeValueAsString((JsonNode) context.getPayload());
-                                } else if (context.getPayload() instanceof String) {
-                                    serializedPayload = (String) context.getPayload();
-                                }
-                                if (context.getPayload() instanceof byte[]) {
-                                    serializedPayload = Hex.encodeHexString((byte[]) context.getPayload());
-                                }
-
-                                if (serializedPayload != null) {
-                                    mapping.addSnoopedTemplate(serializedPayload);
-                                    mappingStatus.snoopedTemplatesTotal = mapping.snoopedTemplates.size();
-                                    mappingStatus.snoopedTemplatesActive++;
-
-                                    log.debug("Tenant {} - Adding snoopedTemplate to map: {},{},{}", tenant,
-                                            mapping.subscriptionTopic,
-                                            mapping.snoopedTemplates.size(),
-                                            mapping.snoopStatus);
-                                    mappingComponent.addDirtyMapping(tenant, mapping);
-
-                                } else {
-                                    log.warn(
-                                            "Tenant {} - Message could NOT be parsed, ignoring this message, as class is not valid: {} {}",
-                                            tenant,
-                                            context.getPayload().getClass());
-                                }
-                            } else {
-                                processor.extractFromSource(context);
-                                processor.substituteInTargetAndSend(context);
-                                List<C8YRequest> resultRequests = context.getRequests();
-                                if (context.hasError() || resultRequests.stream().anyMatch(r -> r.hasError())) {
-                                    mappingStatus.errors++;
-                                }
-                            }
-                        } catch (Exception e) {
-                            log.warn("Tenant {} - Message could NOT be parsed, ignoring this message: {}", tenant,
-                                    e.getMessage());
-                            log.debug("Tenant {} - Message Stacktrace: ", tenant, e);
-                            mappingStatus.errors++;
+                    if (serviceConfiguration.logPayload || mapping.debug) {
+                        log.info("Tenant {} - New message on topic: '{}', wrapped message: {}", tenant,
+                                context.getTopic(),
+                                context.getPayload().toString());
+                    } else {
+                        log.info("Tenant {} - New message on topic: '{}'", tenant, context.getTopic());
+                    }
+                    mappingStatus.incrementMessagesReceived();
+                    mappingStatus.addBytesProcessed(connectorMessage.getPayloadLength());
+                    if (mapping.snoopStatus == SnoopStatus.ENABLED
+                            || mapping.snoopStatus == SnoopStatus.STARTED) {
+                        String serializedPayload = null;
+                        if (context.getPayload() instanceof JsonNode) {
+                            serializedPayload = objectMapper
+                                    .writeValueAsString((JsonNode) context.getPayload());
+                        } else if (context.getPayload() instanceof String) {
+                            serializedPayload = (String) context.getPayload();
+                        }
+                        if (context.getPayload() instanceof byte[]) {
+                            serializedPayload = Hex.encodeHexString((byte[]) context.getPayload());
+                        }
+
+                        if (serializedPayload != null) {
+                            mapping.addSnoopedTemplate(serializedPayload);
+                            mappingStatus.setSnoopedTemplatesTotal(mapping.snoopedTemplates.size());
+                            mappingStatus.incrementSnoopedTemplatesActive();
+
+                            log.debug("Tenant {} - Adding snoopedTemplate to map: {},{},{}", tenant,
+                                    mapping.subscriptionTopic,
+                                    mapping.snoopedTemplates.size(),
+                                    mapping.snoopStatus);
+                            mappingComponent.addDirtyMapping(tenant, mapping);
+
+                        } else {
+                            log.warn(
+                                    "Tenant {} - Message could NOT be parsed, ignoring this message, as class is not valid: {} {}",
+                                    tenant,
+                                    context.getPayload().getClass());
                         }
                     } else {
-                        mappingStatusUnspecified.errors++;
-                        log.error("Tenant {} - No process for MessageType: {} registered, ignoring this message!",
-                                tenant, mappingType);
+                        start = System.nanoTime();
+                        processor.extractFromSource(context);
+                        mappingStatus.recordLatency(ProcessingStage.EXTRACT, System.nanoTime() - start);
+                        start = System.nanoTime();
+                        processor.substituteInTargetAndSend(context);
+                        long sendStart = System.nanoTime();
+                        mappingStatus.recordLatency(ProcessingStage.SUBSTITUTE, sendStart - start);
+                        if (context.getIdentityResolutionNanos() > 0) {
+                            mappingStatus.recordLatency(ProcessingStage.RESOLVE_IDENTITY,
+                                    context.getIdentityResolutionNanos());
+                        }
+                        // requests are sent asynchronously, evaluate them when all are completed
+                        pendingRequests = context.allRequestsCompleted().handle((v, e) -> {
+                            mappingStatus.recordLatency(ProcessingStage.SEND, System.nanoTime() - sendStart);
+                            List<C8YRequest> resultRequests = context.getRequests();
+                            if (sendPayload) {
+                                mappingStatus.addRequestsSent(resultRequests.size());
+                            }
+                            if (context.hasError() || resultRequests.stream().anyMatch(r -> r.hasError())) {
+                                mappingStatus.incrementErrors();
+                            }
+                            return null;
+                        });
                     }
-                    processingResult.add(context);
+                } catch (Exception e) {
+                    log.warn("Tenant {} - Message could NOT be parsed, ignoring this message: {}", tenant,
+                            e.getMessage());
+                    log.debug("Tenant {} - Message Stacktrace: ", tenant, e);
+                    mappingStatus.incrementErrors();
                 }
-            });
-            return processingResult;
+            } else {
+                mappingStatusUnspecified.incrementErrors();
+                log.error("Tenant {} - No process for MessageType: {} registered, ignoring this message!",
+                        tenant, mappingType);
+            }
+            return pendingRequests;
         }
     }
 
-    public Future<List<ProcessingContext<?>>> processMessage(ConnectorMessage message) {
+    private static class SharedPayload {
+        private final Object payload;
+        private final Exception error;
+        private final long nanos;
+
+        private SharedPayload(Object payload, Exception error, long nanos) {
+            this.payload = payload;
+            this.error = error;
+            this.nanos = nanos;
+        }
+    }
+
+    public CompletableFuture<List<ProcessingContext<?>>> processMessage(ConnectorMessage message) {
         String topic = message.getTopic();
         String tenant = message.getTenant();
 
-        MappingStatus mappingStatusUnspecified = mappingComponent.getMappingStatus(tenant, Mapping.UNSPECIFIED_MAPPING);
-        Future<List<ProcessingContext<?>>> futureProcessingResult = null;
+        MappingStatusCounters mappingStatusUnspecified = mappingComponent.getMappingStatus(tenant, Mapping.UNSPECIFIED_MAPPING);
+        CompletableFuture<List<ProcessingContext<?>>> futureProcessingResult = null;
         List<Mapping> resolvedMappings = new ArrayList<>();
 
         if (topic != null && !topic.startsWith("$SYS")) {
-            if (message.getPayload() != null) {
+            if (message.hasPayload()) {
                 try {
                     resolvedMappings = mappingComponent.resolveMappingInbound(tenant, topic);
                 } catch (Exception e) {
@@ -224,7 +352,7 @@ public class AsynchronousDispatcherInbound implements GenericMessageCallback {
                             "Tenant {} - Error resolving appropriate map for topic {}. Could NOT be parsed. Ignoring this message!",
                             tenant, topic);
                     log.debug(e.getMessage(), e);
-                    mappingStatusUnspecified.errors++;
+                    mappingStatusUnspecified.incrementErrors();
                 }
             } else {
                 return futureProcessingResult;
@@ -233,9 +361,17 @@ public class AsynchronousDispatcherInbound implements GenericMessageCallback {
             return futureProcessingResult;
         }
 
-        futureProcessingResult = cachedThreadPool.submit(
-                new MappingInboundTask(configurationRegistry, resolvedMappings,
-                        message));
+        try {
+            CompletableFutureTask<List<ProcessingContext<?>>> task = new CompletableFutureTask<>(
+                    new MappingInboundTask(configurationRegistry, resolvedMappings,
+                            message, workerPool.getFanOutExecutor()));
+            workerPool.execute(task);
+            futureProcessingResult = task.getCompletion();
+        } catch (RejectedExecutionException e) {
+            log.warn("Tenant {} - Message on topic {} rejected by worker pool: {}", tenant, topic, e.getMessage());
+            mappingStatusUnspecified.incrementErrors();
+            futureProcessingResult = CompletableFuture.failedFuture(e);
+        }
 
         return futureProcessingResult;
 
@@ -246,8 +382,20 @@ public class AsynchronousDispatcherInbound implements GenericMessageCallback {
     }
 
     @Override
-    public void onMessage(ConnectorMessage message) {
-        processMessage(message);
+    public CompletableFuture<List<ProcessingContext<?>>> onMessage(ConnectorMessage message) {
+        return processMessage(message);
+    }
+
+    /**
+     * Returns true, when the queue of the worker pool is full or the backlog of
+     * requests to Cumulocity of the tenant is full. The workers return as soon as
+     * the requests of a message are queued, so the queue of the worker pool stays
+     * empty, while Cumulocity slows down.
+     */
+    @Override
+    public boolean isSaturated() {
+        return workerPool.getQueue().remainingCapacity() == 0
+                || configurationRegistry.getC8yAgent().isSaturated(connectorClient.getTenant());
     }
 
     @Override
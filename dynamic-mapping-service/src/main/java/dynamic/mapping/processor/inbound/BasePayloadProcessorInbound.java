@@ -29,7 +29,6 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.TextNode;
 import com.jayway.jsonpath.DocumentContext;
-import com.jayway.jsonpath.JsonPath;
 import com.jayway.jsonpath.PathNotFoundException;
 
 import dynamic.mapping.model.Mapping;
@@ -38,6 +37,8 @@ import lombok.extern.slf4j.Slf4j;
 import dynamic.mapping.connector.core.callback.ConnectorMessage;
 import dynamic.mapping.core.C8YAgent;
 import dynamic.mapping.core.ConfigurationRegistry;
+import dynamic.mapping.core.cache.ExpressionCache;
+import dynamic.mapping.core.cache.TargetTemplateCache;
 import dynamic.mapping.model.API;
 import dynamic.mapping.model.MappingRepresentation;
 import dynamic.mapping.processor.ProcessingException;
@@ -45,12 +46,14 @@ import dynamic.mapping.processor.model.C8YRequest;
 import dynamic.mapping.processor.model.MappingType;
 import dynamic.mapping.processor.model.ProcessingContext;
 import dynamic.mapping.processor.model.RepairStrategy;
+import dynamic.mapping.processor.model.TargetTemplate;
 import org.json.JSONException;
 import org.springframework.web.bind.annotation.RequestMethod;
 
 import java.io.IOException;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletionException;
 
 @Slf4j
 public abstract class BasePayloadProcessorInbound<T> {
@@ -58,10 +61,16 @@ public abstract class BasePayloadProcessorInbound<T> {
     public BasePayloadProcessorInbound(ConfigurationRegistry configurationRegistry) {
         this.objectMapper = configurationRegistry.getObjectMapper();
         this.c8yAgent = configurationRegistry.getC8yAgent();
+        this.expressionCache = configurationRegistry.getExpressionCache();
+        this.targetTemplateCache = configurationRegistry.getTargetTemplateCache();
     }
 
     protected C8YAgent c8yAgent;
 
+    protected ExpressionCache expressionCache;
+
+    protected TargetTemplateCache targetTemplateCache;
+
     protected ObjectMapper objectMapper;
 
     public abstract ProcessingContext<T> deserializePayload(ProcessingContext<T> context, ConnectorMessage message)
@@ -98,13 +107,15 @@ public abstract class BasePayloadProcessorInbound<T> {
             deviceEntries.add(toDouble);
         }
         Set<String> pathTargets = postProcessingCache.keySet();
+        TargetTemplate targetTemplate = targetTemplateCache.getTemplate(tenant, mapping);
 
         int i = 0;
         for (MappingSubstitution.SubstituteValue device : deviceEntries) {
 
             int predecessor = -1;
-            DocumentContext payloadTarget = JsonPath.parse(mapping.target);
+            DocumentContext payloadTarget = targetTemplate.newInstance();
             for (String pathTarget : pathTargets) {
+                TargetTemplate.Slot slot = targetTemplate.getSlot(pathTarget);
                 MappingSubstitution.SubstituteValue substituteValue = new MappingSubstitution.SubstituteValue(
                         new TextNode("NOT_DEFINED"), MappingSubstitution.SubstituteValue.TYPE.TEXTUAL,
                         RepairStrategy.DEFAULT);
@@ -128,8 +139,10 @@ public abstract class BasePayloadProcessorInbound<T> {
                 if (!mapping.targetAPI.equals(API.INVENTORY)) {
                     if (pathTarget.equals(deviceIdentifierMapped2PathTarget2) && mapping.mapDeviceIdentifier) {
 
+                        long start = System.nanoTime();
                         ExternalIDRepresentation sourceId = c8yAgent.resolveExternalId2GlobalId(tenant,
                                 new ID(mapping.externalIdType, substituteValue.typedValue().toString()), context);
+                        context.addIdentityResolutionNanos(System.nanoTime() - start);
                         if (sourceId == null && mapping.createNonExistingDevice) {
                             ManagedObjectRepresentation attocDevice = null;
                             Map<String, Object> request = new HashMap<String, Object>();
@@ -163,43 +176,35 @@ public abstract class BasePayloadProcessorInbound<T> {
                         }
 
                     }
-                    substituteValueInObject(mapping.mappingType, substituteValue, payloadTarget, pathTarget);
+                    substituteValueInObject(mapping.mappingType, substituteValue, payloadTarget, slot);
                 } else if (!pathTarget.equals(deviceIdentifierMapped2PathTarget2)) {
-                    substituteValueInObject(mapping.mappingType, substituteValue, payloadTarget, pathTarget);
+                    substituteValueInObject(mapping.mappingType, substituteValue, payloadTarget, slot);
                 }
             }
             /*
              * step 4 prepare target payload for sending to c8y
              */
             if (mapping.targetAPI.equals(API.INVENTORY)) {
-                ManagedObjectRepresentation attocDevice = null;
                 var newPredecessor = context.addRequest(
                         new C8YRequest(predecessor, RequestMethod.PATCH, device.value.asText(), mapping.externalIdType,
                                 payloadTarget.jsonString(),
                                 null, API.INVENTORY, null));
-                try {
-                    attocDevice = c8yAgent.upsertDevice(tenant,
-                            new ID(mapping.externalIdType, device.value.asText()), context);
-                    var response = objectMapper.writeValueAsString(attocDevice);
-                    context.getCurrentRequest().setResponse(response);
-                } catch (Exception e) {
-                    context.getCurrentRequest().setError(e);
-                }
+                C8YRequest currentRequest = context.getCurrentRequest();
+                context.addPendingRequest(c8yAgent
+                        .upsertDeviceAsync(tenant, new ID(mapping.externalIdType, device.value.asText()), context)
+                        .whenComplete((attocDevice, e) -> completeRequest(currentRequest, attocDevice, e)));
                 predecessor = newPredecessor;
             } else if (!mapping.targetAPI.equals(API.INVENTORY)) {
-                AbstractExtensibleRepresentation attocRequest = null;
                 var newPredecessor = context.addRequest(
                         new C8YRequest(predecessor, RequestMethod.POST, device.value.asText(), mapping.externalIdType,
                                 payloadTarget.jsonString(),
                                 null, mapping.targetAPI, null));
-                try {
-                    if (context.isSendPayload()) {
-                        attocRequest = c8yAgent.createMEAO(context);
-                    }
-                    var response = objectMapper.writeValueAsString(attocRequest);
-                    context.getCurrentRequest().setResponse(response);
-                } catch (Exception e) {
-                    context.getCurrentRequest().setError(e);
+                C8YRequest currentRequest = context.getCurrentRequest();
+                if (context.isSendPayload()) {
+                    context.addPendingRequest(c8yAgent.createMEAOAsync(context)
+                            .whenComplete((attocRequest, e) -> completeRequest(currentRequest, attocRequest, e)));
+                } else {
+                    completeRequest(currentRequest, null, null);
                 }
                 predecessor = newPredecessor;
             } else {
@@ -214,13 +219,36 @@ public abstract class BasePayloadProcessorInbound<T> {
         return context;
     }
 
+    private void completeRequest(C8YRequest request, Object result, Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error == null) {
+            try {
+                request.setResponse(objectMapper.writeValueAsString(result));
+            } catch (JsonProcessingException e) {
+                request.setError(e);
+            }
+        } else if (error instanceof Exception) {
+            request.setError((Exception) error);
+        } else {
+            request.setError(new ProcessingException(error.getMessage(), error));
+        }
+    }
+
     public void substituteValueInObject(MappingType type, MappingSubstitution.SubstituteValue sub,
             DocumentContext jsonObject, String keys)
             throws JSONException {
+        substituteValueInObject(type, sub, jsonObject, TargetTemplate.Slot.of(keys));
+    }
+
+    public void substituteValueInObject(MappingType type, MappingSubstitution.SubstituteValue sub,
+            DocumentContext jsonObject, TargetTemplate.Slot slot)
+            throws JSONException {
         boolean subValueMissing = sub.value == null;
         boolean subValueNull = (sub.value == null) || (sub.value != null && sub.value.isNull());
         try {
-            if ("$".equals(keys)) {
+            if (slot.isRoot()) {
                 Object replacement = sub.typedValue();
                 if (replacement instanceof Map<?, ?>) {
                     Map<String, Object> rm = (Map<String, Object>) replacement;
@@ -231,19 +259,18 @@ public abstract class BasePayloadProcessorInbound<T> {
             } else {
                 if ((sub.repairStrategy.equals(RepairStrategy.REMOVE_IF_MISSING) && subValueMissing) ||
                         (sub.repairStrategy.equals(RepairStrategy.REMOVE_IF_NULL) && subValueNull)) {
-                    jsonObject.delete(keys);
+                    jsonObject.delete(slot.getPath());
                 } else if (sub.repairStrategy.equals(RepairStrategy.CREATE_IF_MISSING)) {
-                    boolean pathIsNested = keys.contains(".") || keys.contains("[");
-                    if (pathIsNested) {
+                    if (slot.isNested()) {
                         throw new JSONException("Can only create new nodes ion the root level!");
                     }
-                    jsonObject.put("$", keys, sub.typedValue());
+                    jsonObject.put("$", slot.getPathTarget(), sub.typedValue());
                 } else {
-                    jsonObject.set(keys, sub.typedValue());
+                    jsonObject.set(slot.getPath(), sub.typedValue());
                 }
             }
         } catch (PathNotFoundException e) {
-            throw new PathNotFoundException(String.format("Path: %s not found!", keys));
+            throw new PathNotFoundException(String.format("Path: %s not found!", slot.getPathTarget()));
         }
     }
 
@@ -28,6 +28,7 @@ import dynamic.mapping.processor.model.PayloadWrapper;
 import dynamic.mapping.processor.model.ProcessingContext;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 
 //@Service
@@ -40,8 +41,9 @@ public class FlatFileProcessorInbound extends JSONProcessorInbound {
 
     @Override
     public ProcessingContext<JsonNode> deserializePayload(ProcessingContext<JsonNode> context, ConnectorMessage message) throws IOException {
-        String payloadMessage  = (message.getPayload() != null
-                    ? new String(message.getPayload(), Charset.defaultCharset())
+        ByteBuffer payloadBuffer = message.getPayloadBuffer();
+        String payloadMessage  = (payloadBuffer != null
+                    ? Charset.defaultCharset().decode(payloadBuffer).toString()
                     : "");
         JsonNode payloadJsonNode = objectMapper.valueToTree(new PayloadWrapper(payloadMessage));
         context.setPayload(payloadJsonNode);
@@ -26,21 +26,34 @@ import dynamic.mapping.connector.core.callback.ConnectorMessage;
 import dynamic.mapping.core.ConfigurationRegistry;
 import dynamic.mapping.processor.model.PayloadWrapper;
 import dynamic.mapping.processor.model.ProcessingContext;
-import org.apache.commons.codec.binary.Hex;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 //@Service
 public class GenericBinaryProcessorInbound extends JSONProcessorInbound {
 
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
     public GenericBinaryProcessorInbound (ConfigurationRegistry configurationRegistry){
         super(configurationRegistry);
     }
 
     @Override
     public ProcessingContext<JsonNode> deserializePayload(ProcessingContext<JsonNode> context, ConnectorMessage message) throws IOException{
-        JsonNode payloadJsonNode = objectMapper.valueToTree(new PayloadWrapper("0x" + Hex.encodeHexString(message.getPayload())));
+        JsonNode payloadJsonNode = objectMapper.valueToTree(new PayloadWrapper(encodeHex(message.getPayloadBuffer())));
         context.setPayload(payloadJsonNode);
         return context;
     }
+
+    // encode the buffer directly into the characters of the result instead of
+    // copying it into a byte[] first
+    private static String encodeHex(ByteBuffer buffer) {
+        StringBuilder hex = new StringBuilder(2 + (buffer != null ? buffer.remaining() * 2 : 0)).append("0x");
+        while (buffer != null && buffer.hasRemaining()) {
+            int b = buffer.get() & 0xFF;
+            hex.append(HEX_DIGITS[b >>> 4]).append(HEX_DIGITS[b & 0x0F]);
+        }
+        return hex.toString();
+    }
 }
\ No newline at end of file
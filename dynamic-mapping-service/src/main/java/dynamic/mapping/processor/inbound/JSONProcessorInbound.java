@@ -23,18 +23,20 @@ package dynamic.mapping.processor.inbound;
 
 import com.api.jsonata4java.expressions.EvaluateException;
 import com.api.jsonata4java.expressions.EvaluateRuntimeException;
-import com.api.jsonata4java.expressions.Expressions;
 import com.api.jsonata4java.expressions.ParseException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.node.TextNode;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
 import dynamic.mapping.model.Mapping;
 import dynamic.mapping.model.MappingSubstitution;
+import dynamic.mapping.model.SnoopStatus;
 import lombok.extern.slf4j.Slf4j;
 import dynamic.mapping.configuration.ServiceConfiguration;
 import dynamic.mapping.connector.core.callback.ConnectorMessage;
 import dynamic.mapping.core.ConfigurationRegistry;
+import dynamic.mapping.core.cache.StreamingPathExtractor;
 import dynamic.mapping.model.API;
 import dynamic.mapping.processor.ProcessingException;
 import dynamic.mapping.processor.model.ProcessingContext;
@@ -57,7 +59,20 @@ public class JSONProcessorInbound extends BasePayloadProcessorInbound<JsonNode>
     @Override
     public ProcessingContext<JsonNode> deserializePayload(ProcessingContext<JsonNode> context,
             ConnectorMessage message) throws IOException {
-        JsonNode jsonNode = objectMapper.readTree(message.getPayload());
+        Mapping mapping = context.getMapping();
+        ServiceConfiguration serviceConfiguration = context.getServiceConfiguration();
+        // snooping and debugging require the complete payload
+        if (serviceConfiguration != null && serviceConfiguration.streamingExtractionEnabled && mapping != null
+                && !mapping.debug && mapping.snoopStatus != SnoopStatus.ENABLED
+                && mapping.snoopStatus != SnoopStatus.STARTED) {
+            StreamingPathExtractor extractor = expressionCache.getStreamingExtractor(context.getTenant(), mapping);
+            if (extractor != null) {
+                context.setPayload(extractor.extract(new ByteBufferBackedInputStream(message.getPayloadBuffer())));
+                return context;
+            }
+        }
+        // read directly from the buffer of the connector message without copying it
+        JsonNode jsonNode = objectMapper.readTree(new ByteBufferBackedInputStream(message.getPayloadBuffer()));
         context.setPayload(jsonNode);
         return context;
     }
@@ -80,6 +95,9 @@ public class JSONProcessorInbound extends BasePayloadProcessorInbound<JsonNode>
         List<String> splitTopicAsList = Mapping.splitTopicExcludingSeparatorAsList(context.getTopic());
         splitTopicAsList.forEach(s -> topicLevels.add(s));
         if (payloadJsonNode instanceof ObjectNode) {
+            // the payload can be shared by several mappings of the message, patch a shallow copy
+            payloadJsonNode = objectMapper.createObjectNode().setAll((ObjectNode) payloadJsonNode);
+            context.setPayload(payloadJsonNode);
             ((ObjectNode) payloadJsonNode).set(Mapping.TOKEN_TOPIC_LEVEL, topicLevels);
             if (context.isSupportsMessageContext() && context.getKey() != null) {
                 ObjectNode contextData = objectMapper.createObjectNode();
@@ -105,8 +123,8 @@ public class JSONProcessorInbound extends BasePayloadProcessorInbound<JsonNode>
              * step 1 extract content from inbound payload
              */
             try {
-                Expressions expr = Expressions.parse(substitution.pathSource);
-                extractedSourceContent = expr.evaluate(payloadJsonNode);
+                extractedSourceContent = expressionCache.evaluate(tenant, mapping, substitution.pathSource,
+                        payloadJsonNode);
             } catch (ParseException | IOException | EvaluateException e) {
                 log.error("Tenant {} - Exception for: {}, {}: ", tenant, substitution.pathSource,
                         payload, e);
@@ -21,6 +21,7 @@
 
 package dynamic.mapping.processor.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import dynamic.mapping.configuration.ServiceConfiguration;
 import dynamic.mapping.model.Mapping;
 import dynamic.mapping.model.MappingSubstitution;
@@ -32,6 +33,7 @@ import dynamic.mapping.processor.ProcessingException;
 
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -62,6 +64,14 @@ public class ProcessingContext<O> {
 
     private List<Exception> errors  = new ArrayList<Exception>();
 
+    // requests sent asynchronously to Cumulocity, that are not yet completed
+    @JsonIgnore
+    private List<CompletableFuture<?>> pendingRequests = new ArrayList<CompletableFuture<?>>();
+
+    // time spent resolving device identities, recorded by the dispatcher
+    @JsonIgnore
+    private long identityResolutionNanos = 0;
+
     private ProcessingType processingType = ProcessingType.UNDEFINED;
 
     private Map<String, Integer> cardinality = new HashMap<String, Integer>();
@@ -120,6 +130,22 @@ public class ProcessingContext<O> {
         return requests.get(requests.size()-1);
     }
 
+    public void addIdentityResolutionNanos(long nanos) {
+        identityResolutionNanos += nanos;
+    }
+
+    public void addPendingRequest(CompletableFuture<?> pendingRequest) {
+        pendingRequests.add(pendingRequest);
+    }
+
+    /*
+     * @return future that completes when all asynchronously sent requests are
+     * completed, successfully or not
+     */
+    public CompletableFuture<Void> allRequestsCompleted() {
+        return CompletableFuture.allOf(pendingRequests.toArray(new CompletableFuture<?>[0]));
+    }
+
     public void addError(ProcessingException processingException) {
         errors.add(processingException);
     }
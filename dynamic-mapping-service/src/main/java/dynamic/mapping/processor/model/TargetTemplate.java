@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2022 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @authors Christof Strack, Stefan Witschel
+ */
+
+package dynamic.mapping.processor.model;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.spi.json.JsonProvider;
+
+import dynamic.mapping.model.Mapping;
+import dynamic.mapping.model.MappingSubstitution;
+import lombok.Getter;
+
+/**
+ * TargetTemplate
+ * 
+ * Compiled representation of the <code>target</code> of a mapping. The
+ * template is parsed once per version of the mapping and the
+ * <code>pathTarget</code> of every substitution is pre-resolved to a
+ * <code>Slot</code>.
+ * For every request that is sent only a copy of the parsed tree is created and
+ * the slots are filled, instead of parsing the template string again.
+ */
+public class TargetTemplate {
+
+    @Getter
+    private final String mappingId;
+
+    @Getter
+    private final long lastUpdate;
+
+    private final String target;
+
+    private final Object tree;
+
+    private final JsonProvider jsonProvider;
+
+    // structure: <pathTarget, slot>
+    private final Map<String, Slot> slots = new ConcurrentHashMap<>();
+
+    @Getter
+    public static class Slot {
+        private final String pathTarget;
+        private final JsonPath path;
+        private final boolean root;
+        private final boolean nested;
+
+        private Slot(String pathTarget) {
+            this.pathTarget = pathTarget;
+            this.root = "$".equals(pathTarget);
+            this.nested = pathTarget.contains(".") || pathTarget.contains("[");
+            this.path = root ? null : JsonPath.compile(pathTarget);
+        }
+
+        /**
+         * Resolve a slot for a pathTarget that is not taken from a template
+         */
+        public static Slot of(String pathTarget) {
+            return new Slot(pathTarget);
+        }
+    }
+
+    private TargetTemplate(Mapping mapping, JsonProvider jsonProvider) {
+        this.mappingId = mapping.id;
+        this.lastUpdate = mapping.lastUpdate;
+        this.target = mapping.target;
+        this.jsonProvider = jsonProvider;
+        this.tree = jsonProvider.parse(mapping.target);
+        if (mapping.substitutions != null) {
+            for (MappingSubstitution substitution : mapping.substitutions) {
+                if (substitution.pathTarget != null) {
+                    slots.computeIfAbsent(substitution.pathTarget, Slot::new);
+                }
+            }
+        }
+    }
+
+    public static TargetTemplate compile(Mapping mapping) {
+        return new TargetTemplate(mapping, Configuration.defaultConfiguration().jsonProvider());
+    }
+
+    /**
+     * Test if the template was compiled from the current version of the mapping
+     */
+    public boolean isCompiledFrom(Mapping mapping) {
+        return lastUpdate == mapping.lastUpdate
+                && (target == mapping.target || (target != null && target.equals(mapping.target)));
+    }
+
+    /**
+     * Get the pre-resolved slot for a pathTarget. Targets that are not part of the
+     * substitutions of the mapping are resolved on first use.
+     */
+    public Slot getSlot(String pathTarget) {
+        return slots.computeIfAbsent(pathTarget, Slot::new);
+    }
+
+    /**
+     * Create a new document from a copy of the parsed template, which can be
+     * modified without affecting the template
+     */
+    public DocumentContext newInstance() {
+        return JsonPath.parse(copy(tree));
+    }
+
+    private Object copy(Object node) {
+        if (jsonProvider.isMap(node)) {
+            Object result = jsonProvider.createMap();
+            for (String key : jsonProvider.getPropertyKeys(node)) {
+                jsonProvider.setProperty(result, key, copy(jsonProvider.getMapValue(node, key)));
+            }
+            return result;
+        } else if (jsonProvider.isArray(node)) {
+            Object result = jsonProvider.createArray();
+            int length = jsonProvider.length(node);
+            for (int i = 0; i < length; i++) {
+                jsonProvider.setArrayIndex(result, i, copy(jsonProvider.getArrayIndex(node, i)));
+            }
+            return result;
+        }
+        // primitive values are immutable and can be shared
+        return node;
+    }
+}
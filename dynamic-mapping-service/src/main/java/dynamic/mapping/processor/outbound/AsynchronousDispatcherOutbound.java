@@ -28,9 +28,12 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import dynamic.mapping.configuration.ServiceConfiguration;
+import dynamic.mapping.connector.core.callback.GenericMessageCallback;
 import dynamic.mapping.connector.core.client.AConnectorClient;
+import dynamic.mapping.connector.core.client.ConnectorException;
 import dynamic.mapping.model.Mapping;
-import dynamic.mapping.model.MappingStatus;
+import dynamic.mapping.model.MappingStatusCounters;
+import dynamic.mapping.model.ProcessingStage;
 import dynamic.mapping.notification.websocket.NotificationCallback;
 import dynamic.mapping.processor.model.C8YRequest;
 import dynamic.mapping.processor.model.MappingType;
@@ -45,6 +48,7 @@ import dynamic.mapping.model.SnoopStatus;
 import dynamic.mapping.notification.C8YNotificationSubscriber;
 import dynamic.mapping.notification.websocket.Notification;
 import dynamic.mapping.processor.C8YMessage;
+import dynamic.mapping.core.executor.CompletableFutureTask;
 import org.apache.commons.codec.binary.Hex;
 
 import java.net.URI;
@@ -52,9 +56,10 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 /**
  * AsynchronousDispatcherOutbound
@@ -126,10 +131,14 @@ public class AsynchronousDispatcherOutbound implements NotificationCallback {
     }
 
     @Override
-    public void onNotification(Notification notification) {
-        // We don't care about UPDATES nor DELETES and ignore notifications if connector
-        // is not connected
-        if ("CREATE".equals(notification.getNotificationHeaders().get(1)) && connectorClient.isConnected()) {
+    public CompletableFuture<?> onNotification(Notification notification) {
+        // We don't care about UPDATES nor DELETES
+        if ("CREATE".equals(notification.getNotificationHeaders().get(1))) {
+            if (!connectorClient.isConnected()) {
+                // leave the notification unacknowledged, so it is redelivered instead of lost
+                return CompletableFuture.failedFuture(new ConnectorException(
+                        String.format("Connector %s is not connected", connectorClient.getConnectorIdent())));
+            }
             String tenant = getTenantFromNotificationHeaders(notification.getNotificationHeaders());
             log.info("Tenant {} - Notification received: <{}>, <{}>, <{}>, <{}>", tenant, notification.getMessage(),
                     notification.getNotificationHeaders(), connectorClient.connectorConfiguration.name,
@@ -139,8 +148,39 @@ public class AsynchronousDispatcherOutbound implements NotificationCallback {
             c8yMessage.setApi(notification.getApi());
             c8yMessage.setTenant(tenant);
             c8yMessage.setSendPayload(true);
-            processMessage(c8yMessage);
+            CompletableFuture<List<ProcessingContext<?>>> futureProcessingResult = processMessage(c8yMessage);
+            if (futureProcessingResult != null) {
+                // acknowledge the notification when all outbound messages are published, or
+                // when they failed for a reason a redelivery can not fix
+                return futureProcessingResult.handle((results, e) -> {
+                    if (isRedeliveryRequired(results, e)) {
+                        throw e instanceof CompletionException ? (CompletionException) e
+                                : new CompletionException(e != null ? e
+                                        : new ConnectorException(String.format(
+                                                "Publishing outbound message failed, connector %s is not reachable",
+                                                connectorClient.getConnectorIdent())));
+                    }
+                    return results;
+                });
+            }
         }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * A notification is redelivered, when the connector was not reachable, the
+     * same rule as for inbound messages applies. Notifications that failed for
+     * other reasons, e.g. a substitution error or a message rejected by the
+     * broker, would fail again and are acknowledged.
+     */
+    private boolean isRedeliveryRequired(List<ProcessingContext<?>> results, Throwable error) {
+        if (GenericMessageCallback.isRedeliveryRequired(results, error)) {
+            return true;
+        }
+        // publishes fail with errors of the client library, when the connection to
+        // the broker is lost
+        return !connectorClient.isConnected() && results.stream()
+                .anyMatch(context -> context.getRequests().stream().anyMatch(C8YRequest::hasError));
     }
 
     @Override
@@ -161,7 +201,7 @@ public class AsynchronousDispatcherOutbound implements NotificationCallback {
         return notificationHeaders.get(0).split("/")[1];
     }
 
-    public static class MappingOutboundTask<T> implements Callable<List<ProcessingContext<?>>> {
+    public static class MappingOutboundTask<T> implements Callable<CompletableFuture<List<ProcessingContext<?>>>> {
         List<Mapping> resolvedMappings;
         Map<MappingType, BasePayloadProcessorOutbound<T>> payloadProcessorsOutbound;
         C8YMessage c8yMessage;
@@ -183,18 +223,24 @@ public class AsynchronousDispatcherOutbound implements NotificationCallback {
             this.serviceConfiguration = configurationRegistry.getServiceConfigurations().get(c8yMessage.getTenant());
         }
 
+        /**
+         * Processes the notification and returns without waiting for the
+         * acknowledgements of the published messages. The returned future completes
+         * when all publishes are acknowledged.
+         */
         @Override
-        public List<ProcessingContext<?>> call() throws Exception {
+        public CompletableFuture<List<ProcessingContext<?>>> call() throws Exception {
             String tenant = c8yMessage.getTenant();
             boolean sendPayload = c8yMessage.isSendPayload();
 
             List<ProcessingContext<?>> processingResult = new ArrayList<>();
-            MappingStatus mappingStatusUnspecified = mappingStatusComponent
+            List<CompletableFuture<?>> pendingMappings = new ArrayList<>();
+            MappingStatusCounters mappingStatusUnspecified = mappingStatusComponent
                     .getMappingStatus(tenant, Mapping.UNSPECIFIED_MAPPING);
             resolvedMappings.forEach(mapping -> {
                 // only process active mappings
                 if (mapping.isActive()) {
-                    MappingStatus mappingStatus = mappingStatusComponent.getMappingStatus(tenant, mapping);
+                    MappingStatusCounters mappingStatus = mappingStatusComponent.getMappingStatus(tenant, mapping);
 
                     ProcessingContext<?> context;
                     if (mapping.mappingType.payloadType.equals(String.class)) {
@@ -216,7 +262,9 @@ public class AsynchronousDispatcherOutbound implements NotificationCallback {
 
                     if (processor != null) {
                         try {
+                            long start = System.nanoTime();
                             processor.deserializePayload(context, c8yMessage);
+                            mappingStatus.recordLatency(ProcessingStage.DESERIALIZE, System.nanoTime() - start);
                             if (serviceConfiguration.logPayload || mapping.debug) {
                                 log.info("Tenant {} - New message on topic: '{}', wrapped message: {}",
                                         tenant,
@@ -226,7 +274,8 @@ public class AsynchronousDispatcherOutbound implements NotificationCallback {
                                 log.info("Tenant {} - New message on topic: '{}', sendPayload: {}", tenant,
                                         context.getTopic(), sendPayload);
                             }
-                            mappingStatus.messagesReceived++;
+                            mappingStatus.incrementMessagesReceived();
+                            mappingStatus.addBytesProcessed(c8yMessage.getPayload().length());
                             if (mapping.snoopStatus == SnoopStatus.ENABLED
                                     || mapping.snoopStatus == SnoopStatus.STARTED) {
                                 String serializedPayload = null;
@@ -242,8 +291,8 @@ public class AsynchronousDispatcherOutbound implements NotificationCallback {
 
                                 if (serializedPayload != null) {
                                     mapping.addSnoopedTemplate(serializedPayload);
-                                    mappingStatus.snoopedTemplatesTotal = mapping.snoopedTemplates.size();
-                                    mappingStatus.snoopedTemplatesActive++;
+                                    mappingStatus.setSnoopedTemplatesTotal(mapping.snoopedTemplates.size());
+                                    mappingStatus.incrementSnoopedTemplatesActive();
 
                                     log.debug("Tenant {} - Adding snoopedTemplate to map: {},{},{}", tenant,
                                             mapping.subscriptionTopic,
@@ -258,36 +307,55 @@ public class AsynchronousDispatcherOutbound implements NotificationCallback {
                                             context.getPayload().getClass());
                                 }
                             } else {
+                                start = System.nanoTime();
                                 processor.extractFromSource(context);
+                                mappingStatus.recordLatency(ProcessingStage.EXTRACT, System.nanoTime() - start);
+                                long sendStart = System.nanoTime();
                                 processor.substituteInTargetAndSend(context);
-                                List<C8YRequest> resultRequests = context.getRequests();
-                                if (context.hasError() || resultRequests.stream().anyMatch(r -> r.hasError())) {
-                                    mappingStatus.errors++;
+                                if (context.getIdentityResolutionNanos() > 0) {
+                                    mappingStatus.recordLatency(ProcessingStage.RESOLVE_IDENTITY,
+                                            context.getIdentityResolutionNanos());
                                 }
+                                // publishes are acknowledged asynchronously, evaluate them when all are
+                                // completed
+                                pendingMappings.add(context.allRequestsCompleted().handle((v, e) -> {
+                                    mappingStatus.recordLatency(ProcessingStage.SEND, System.nanoTime() - sendStart);
+                                    List<C8YRequest> resultRequests = context.getRequests();
+                                    if (sendPayload) {
+                                        mappingStatus.addRequestsSent(resultRequests.size());
+                                    }
+                                    if (context.hasError() || resultRequests.stream().anyMatch(r -> r.hasError())) {
+                                        mappingStatus.incrementErrors();
+                                    }
+                                    return null;
+                                }));
                             }
                         } catch (Exception e) {
                             log.warn("Tenant {} - Message could NOT be parsed, ignoring this message: {}", tenant,
                                     e.getMessage());
                             log.error("Tenant {} - Message Stacktrace: ", tenant, e);
-                            mappingStatus.errors++;
+                            mappingStatus.incrementErrors();
                         }
                     } else {
-                        mappingStatusUnspecified.errors++;
+                        mappingStatusUnspecified.incrementErrors();
                         log.error("Tenant {} - No process for MessageType: {} registered, ignoring this message!",
                                 tenant, mappingType);
                     }
                     processingResult.add(context);
                 }
             });
-            return processingResult;
+            // the publishes of all mappings are in flight concurrently, the processing
+            // completes when all of them are acknowledged
+            return CompletableFuture.allOf(pendingMappings.toArray(new CompletableFuture<?>[0]))
+                    .thenApply(v -> processingResult);
         }
 
     }
 
-    public Future<List<ProcessingContext<?>>> processMessage(C8YMessage c8yMessage) {
+    public CompletableFuture<List<ProcessingContext<?>>> processMessage(C8YMessage c8yMessage) {
         String tenant = c8yMessage.getTenant();
-        MappingStatus mappingStatusUnspecified = mappingComponent.getMappingStatus(tenant, Mapping.UNSPECIFIED_MAPPING);
-        Future<List<ProcessingContext<?>>> futureProcessingResult = null;
+        MappingStatusCounters mappingStatusUnspecified = mappingComponent.getMappingStatus(tenant, Mapping.UNSPECIFIED_MAPPING);
+        CompletableFuture<List<ProcessingContext<?>>> futureProcessingResult = null;
         List<Mapping> resolvedMappings = new ArrayList<>();
 
         // Handle C8Y Operation Status
@@ -302,7 +370,7 @@ public class AsynchronousDispatcherOutbound implements NotificationCallback {
                 JsonNode message = objectMapper.readTree(c8yMessage.getPayload());
                 resolvedMappings = mappingComponent.resolveMappingOutbound(tenant, message, c8yMessage.getApi());
                 if (resolvedMappings.size() > 0 && op != null)
-                    c8yAgent.updateOperationStatus(tenant, op, OperationStatus.EXECUTING, null);
+                    c8yAgent.updateOperationStatusAsync(tenant, op, OperationStatus.EXECUTING, null);
             } catch (Exception e) {
                 log.warn("Tenant {} - Error resolving appropriate map. Could NOT be parsed. Ignoring this message!",
                         tenant);
@@ -310,40 +378,50 @@ public class AsynchronousDispatcherOutbound implements NotificationCallback {
                 // if (op != null)
                 // c8yAgent.updateOperationStatus(tenant, op, OperationStatus.FAILED,
                 // e.getLocalizedMessage());
-                mappingStatusUnspecified.errors++;
+                mappingStatusUnspecified.incrementErrors();
             }
         } else {
             return futureProcessingResult;
         }
 
-        futureProcessingResult = cachedThreadPool.submit(
+        CompletableFutureTask<List<ProcessingContext<?>>> task = new CompletableFutureTask<>(
                 new MappingOutboundTask(configurationRegistry, resolvedMappings, mappingComponent,
                         payloadProcessorsOutbound, c8yMessage));
+        cachedThreadPool.execute(task);
+        futureProcessingResult = task.getCompletion();
 
         if (op != null) {
-            // Blocking for Operations to receive the processing result to update operation
-            // status
-            try {
-                List<ProcessingContext<?>> results = futureProcessingResult.get();
+            // Update the operation status when the processing result is available, without
+            // blocking the notifications of the connector
+            OperationRepresentation operation = op;
+            futureProcessingResult.whenComplete((results, e) -> {
+                if (e != null) {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    c8yAgent.updateOperationStatusAsync(tenant, operation, OperationStatus.FAILED,
+                            cause.getLocalizedMessage());
+                    return;
+                }
                 if (results.size() > 0) {
-                    if (results.get(0).hasError()) {
-                        c8yAgent.updateOperationStatus(tenant, op, OperationStatus.FAILED,
-                                results.get(0).getErrors().toString());
+                    ProcessingContext<?> result = results.get(0);
+                    List<String> requestErrors = result.getRequests().stream()
+                            .filter(C8YRequest::hasError)
+                            .map(request -> request.getError().getMessage())
+                            .collect(Collectors.toList());
+                    if (result.hasError()) {
+                        c8yAgent.updateOperationStatusAsync(tenant, operation, OperationStatus.FAILED,
+                                result.getErrors().toString());
+                    } else if (!requestErrors.isEmpty()) {
+                        c8yAgent.updateOperationStatusAsync(tenant, operation, OperationStatus.FAILED,
+                                requestErrors.toString());
                     } else {
-                        c8yAgent.updateOperationStatus(tenant, op, OperationStatus.SUCCESSFUL, null);
+                        c8yAgent.updateOperationStatusAsync(tenant, operation, OperationStatus.SUCCESSFUL, null);
                     }
                 } else {
                     // No Mapping found
                     // c8yAgent.updateOperationStatus(tenant, op, OperationStatus.FAILED,
                     // "No Mapping found for operation " + op.toJSON());
                 }
-            } catch (InterruptedException e) {
-                // c8yAgent.updateOperationStatus(tenant, op, OperationStatus.FAILED,
-                // e.getLocalizedMessage());
-            } catch (ExecutionException e) {
-                // c8yAgent.updateOperationStatus(tenant, op, OperationStatus.FAILED,
-                // e.getLocalizedMessage());
-            }
+            });
         }
         return futureProcessingResult;
     }
@@ -34,6 +34,7 @@ import dynamic.mapping.configuration.ServiceConfiguration;
 import dynamic.mapping.connector.core.client.AConnectorClient;
 import dynamic.mapping.core.C8YAgent;
 import dynamic.mapping.core.ConfigurationRegistry;
+import dynamic.mapping.core.cache.ExpressionCache;
 import dynamic.mapping.model.API;
 import dynamic.mapping.processor.C8YMessage;
 import dynamic.mapping.processor.ProcessingException;
@@ -58,10 +59,13 @@ public abstract class BasePayloadProcessorOutbound<T> {
         this.objectMapper = configurationRegistry.getObjectMapper();
         this.connectorClient = connectorClient;
         this.c8yAgent = configurationRegistry.getC8yAgent();
+        this.expressionCache = configurationRegistry.getExpressionCache();
     }
 
     protected C8YAgent c8yAgent;
 
+    protected ExpressionCache expressionCache;
+
     protected ObjectMapper objectMapper;
 
     protected AConnectorClient connectorClient;
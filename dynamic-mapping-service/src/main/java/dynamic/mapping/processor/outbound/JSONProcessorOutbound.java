@@ -23,7 +23,6 @@ package dynamic.mapping.processor.outbound;
 
 import com.api.jsonata4java.expressions.EvaluateException;
 import com.api.jsonata4java.expressions.EvaluateRuntimeException;
-import com.api.jsonata4java.expressions.Expressions;
 import com.api.jsonata4java.expressions.ParseException;
 import com.cumulocity.model.idtype.GId;
 import com.cumulocity.rest.representation.identity.ExternalIDRepresentation;
@@ -83,8 +82,7 @@ public class JSONProcessorOutbound extends BasePayloadProcessorOutbound<JsonNode
              */
             var ps = substitution.pathSource;
             try {
-                Expressions expr = Expressions.parse(ps);
-                extractedSourceContent = expr.evaluate(payloadJsonNode);
+                extractedSourceContent = expressionCache.evaluate(tenant, mapping, ps, payloadJsonNode);
             } catch (ParseException | IOException | EvaluateException e) {
                 log.error("Tenant {} - Exception for: {}, {}: ", context.getTenant(), substitution.pathSource,
                         payload, e);
@@ -146,9 +144,11 @@ public class JSONProcessorOutbound extends BasePayloadProcessorOutbound<JsonNode
                         log.info("Tenant {} - Finding external Id: resolveGlobalId2ExternalId: {}, {}, {}",
                                 context.getTenant(), ps, extractedSourceContent.toPrettyString(),
                                 extractedSourceContent.asText());
+                        long start = System.nanoTime();
                         ExternalIDRepresentation externalId = c8yAgent.resolveGlobalId2ExternalId(context.getTenant(),
                                 new GId(extractedSourceContent.asText()), mapping.externalIdType,
                                 context);
+                        context.addIdentityResolutionNanos(System.nanoTime() - start);
                         if (externalId == null && context.isSendPayload()) {
                             throw new RuntimeException(String.format("External id %s for type %s not found!",
                                     extractedSourceContent.asText(), mapping.externalIdType));
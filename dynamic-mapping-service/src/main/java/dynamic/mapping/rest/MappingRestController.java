@@ -70,6 +70,8 @@ import dynamic.mapping.core.ConnectorStatusEvent;
 import dynamic.mapping.core.MappingComponent;
 import dynamic.mapping.core.Operation;
 import dynamic.mapping.core.ServiceOperation;
+import dynamic.mapping.core.executor.VirtualThreadDiagnostics;
+import dynamic.mapping.model.CacheStatus;
 import dynamic.mapping.model.Direction;
 import dynamic.mapping.model.Extension;
 import dynamic.mapping.model.Feature;
@@ -77,6 +79,8 @@ import dynamic.mapping.model.MappingTreeNode;
 import dynamic.mapping.model.Mapping;
 import dynamic.mapping.model.MappingStatus;
 import dynamic.mapping.model.MappingDeployment;
+import dynamic.mapping.model.VirtualThreadStatus;
+import dynamic.mapping.model.WorkerPoolStatus;
 
 @Slf4j
 @RestController
@@ -109,6 +113,9 @@ public class MappingRestController {
     @Autowired
     private MappingComponent mappingStatusComponent;
 
+    @Autowired
+    private VirtualThreadDiagnostics virtualThreadDiagnostics;
+
     @Value("${APP.externalExtensionsEnabled}")
     private boolean externalExtensionsEnabled;
 
@@ -341,12 +348,11 @@ public class MappingRestController {
         log.info("Tenant {} - Post operation: {}", tenant, operation.toString());
         try {
             if (operation.getOperation().equals(Operation.RELOAD_MAPPINGS)) {
-                mappingComponent.rebuildMappingOutboundCache(tenant);
+                // explicit resync of the mappings with the inventory
                 // in order to keep MappingInboundCache and ActiveSubscriptionMappingInbound in
                 // sync, the ActiveSubscriptionMappingInbound is build on the
                 // previously used updatedMappings
-
-                List<Mapping> updatedMappings = mappingComponent.rebuildMappingInboundCache(tenant);
+                List<Mapping> updatedMappings = mappingComponent.resyncMappings(tenant);
                 Map<String, AConnectorClient> connectorMap = connectorRegistry
                         .getClientsForTenant(tenant);
                 for (AConnectorClient client : connectorMap.values()) {
@@ -449,10 +455,39 @@ public class MappingRestController {
         return new ResponseEntity<List<MappingStatus>>(ms, HttpStatus.OK);
     }
 
+    @RequestMapping(value = "/monitoring/status/cache", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<CacheStatus>> getCacheStatus() {
+        String tenant = contextService.getContext().getTenant();
+        List<CacheStatus> cs = new ArrayList<>();
+        cs.add(configurationRegistry.getExpressionCache().getCacheStatus(tenant));
+        cs.add(configurationRegistry.getTargetTemplateCache().getCacheStatus(tenant));
+        cs.add(configurationRegistry.getTopicCache().getCacheStatus(tenant));
+        cs.add(configurationRegistry.getIdentityCache().getCacheStatus(tenant));
+        log.info("Tenant {} - Get cache status: {}", tenant, cs);
+        return new ResponseEntity<List<CacheStatus>>(cs, HttpStatus.OK);
+    }
+
+    @RequestMapping(value = "/monitoring/status/worker", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<WorkerPoolStatus>> getWorkerPoolStatus() {
+        String tenant = contextService.getContext().getTenant();
+        List<WorkerPoolStatus> ws = configurationRegistry.getWorkerPools().getOrDefault(tenant, Map.of()).values()
+                .stream().map(wp -> wp.getStatus()).collect(Collectors.toList());
+        log.info("Tenant {} - Get worker pool status: {}", tenant, ws);
+        return new ResponseEntity<List<WorkerPoolStatus>>(ws, HttpStatus.OK);
+    }
+
+    @RequestMapping(value = "/monitoring/status/virtualThreads", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<VirtualThreadStatus> getVirtualThreadStatus() {
+        String tenant = contextService.getContext().getTenant();
+        VirtualThreadStatus vs = virtualThreadDiagnostics.getStatus();
+        log.info("Tenant {} - Get virtual thread status: {}", tenant, vs);
+        return new ResponseEntity<VirtualThreadStatus>(vs, HttpStatus.OK);
+    }
+
     @RequestMapping(value = "/monitoring/tree", method = RequestMethod.GET, consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<MappingTreeNode> getInboundMappingTree() {
         String tenant = contextService.getContext().getTenant();
-        MappingTreeNode result = mappingComponent.getResolverMappingInbound().get(tenant);
+        MappingTreeNode result = mappingComponent.getResolverMappingInbound(tenant);
         log.info("Tenant {} - Get mapping tree", tenant);
         return ResponseEntity.status(HttpStatus.OK).body(result);
     }
@@ -566,7 +601,7 @@ public class MappingRestController {
             mapping.active = false;
             final Mapping createdMapping = mappingComponent.createMapping(tenant, mapping);
             if (Direction.OUTBOUND.equals(createdMapping.direction)) {
-                mappingComponent.rebuildMappingOutboundCache(tenant);
+                mappingComponent.addToCacheMappingOutbound(tenant, createdMapping);
             } else {
                 // FIXME Currently we create mappings in ALL connectors assuming they could
                 // occur in all of them.
@@ -574,9 +609,7 @@ public class MappingRestController {
                 clients.keySet().stream().forEach(connector -> {
                     clients.get(connector).updateActiveSubscription(createdMapping, true, false);
                 });
-                mappingComponent.deleteFromCacheMappingInbound(tenant, createdMapping);
                 mappingComponent.addToCacheMappingInbound(tenant, createdMapping);
-                mappingComponent.getCacheMappingInbound().get(tenant).put(createdMapping.id, mapping);
             }
             return ResponseEntity.status(HttpStatus.OK).body(createdMapping);
         } catch (Exception ex) {
@@ -596,15 +629,13 @@ public class MappingRestController {
             log.info("Tenant {} - Update mapping: {}, {}", mapping, id);
             final Mapping updatedMapping = mappingComponent.updateMapping(tenant, mapping, false, false);
             if (Direction.OUTBOUND.equals(mapping.direction)) {
-                mappingComponent.rebuildMappingOutboundCache(tenant);
+                mappingComponent.addToCacheMappingOutbound(tenant, updatedMapping);
             } else {
                 Map<String, AConnectorClient> clients = connectorRegistry.getClientsForTenant(tenant);
                 clients.keySet().stream().forEach(connector -> {
                     clients.get(connector).updateActiveSubscription(updatedMapping, false, false);
                 });
-                mappingComponent.deleteFromCacheMappingInbound(tenant, mapping);
                 mappingComponent.addToCacheMappingInbound(tenant, mapping);
-                mappingComponent.getCacheMappingInbound().get(tenant).put(mapping.id, mapping);
             }
             return ResponseEntity.status(HttpStatus.OK).body(mapping);
         } catch (Exception ex) {
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2022 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @authors Christof Strack, Stefan Witschel
+ */
+
+package dynamic.mapping.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import dynamic.mapping.model.Mapping;
+import dynamic.mapping.model.MappingTopicTrie;
+import dynamic.mapping.model.MappingTreeNode;
+import dynamic.mapping.model.ResolveException;
+
+/**
+ * Compares the resolution of inbound topics with the
+ * <code>MappingTreeNode</code> and the <code>MappingTopicTrie</code>.
+ * Run the main method with the test classpath of the module.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TopicResolutionBenchmark {
+
+    private static final int NUMBER_TOPICS = 1024;
+
+    @Param({ "10", "1000", "100000" })
+    private int numberMappings;
+
+    private MappingTreeNode tree;
+
+    private MappingTopicTrie trie;
+
+    private String[] topics;
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws ResolveException {
+        List<Mapping> mappings = new ArrayList<>();
+        tree = MappingTreeNode.createRootNode("benchmark");
+        for (int i = 0; i < numberMappings; i++) {
+            Mapping mapping = new Mapping();
+            mapping.id = "mapping" + i;
+            mapping.mappingTopic = "device/" + i + "/+/measurement";
+            mapping.subscriptionTopic = "device/" + i + "/#";
+            mappings.add(mapping);
+            tree.addMapping(mapping);
+        }
+        trie = MappingTopicTrie.build(mappings);
+        topics = new String[NUMBER_TOPICS];
+        for (int i = 0; i < NUMBER_TOPICS; i++) {
+            topics[i] = "device/" + (i % numberMappings) + "/sensor" + i + "/measurement";
+        }
+    }
+
+    private String nextTopic() {
+        next = (next + 1) & (NUMBER_TOPICS - 1);
+        return topics[next];
+    }
+
+    @Benchmark
+    public void resolveMappingTreeNode(Blackhole blackhole) throws ResolveException {
+        blackhole.consume(tree.resolveTopicPath(Mapping.splitTopicIncludingSeparatorAsList(nextTopic())));
+    }
+
+    @Benchmark
+    public void resolveMappingTopicTrie(Blackhole blackhole) {
+        blackhole.consume(trie.resolve(nextTopic()));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(TopicResolutionBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2022 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @authors Christof Strack, Stefan Witschel
+ */
+
+package dynamic.mapping.connector.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.InterruptException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TopicTest {
+
+    private static final String TOPIC = "measurements";
+
+    private static final TopicPartition PARTITION = new TopicPartition(TOPIC, 0);
+
+    private MockConsumer<byte[], byte[]> consumer;
+
+    private Topic topic;
+
+    // processing of the consumed records, completed by the tests, in the order
+    // the records were handed to the listener
+    private final Map<String, CompletableFuture<Object>> processing = new LinkedHashMap<>();
+
+    private boolean saturated;
+
+    private boolean failing;
+
+    private long nextOffset;
+
+    private OffsetAndMetadata lastCommitted;
+
+    @BeforeEach
+    void setUp() {
+        consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST) {
+            @Override
+            public synchronized void commitSync(Map<TopicPartition, OffsetAndMetadata> offsets) {
+                // like the KafkaConsumer, a blocking call fails on an interrupted thread
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptException("interrupted");
+                }
+                super.commitSync(offsets);
+                lastCommitted = offsets.get(PARTITION);
+            }
+        };
+        TopicConfig topicConfig = new TopicConfig("t1", "localhost:9092", TOPIC, "user", "password", "group",
+                new Properties());
+        topic = new Topic(topicConfig, consumer, Runnable::run);
+        topic.subscribe(new TopicEventListener() {
+            @Override
+            public CompletableFuture<?> onEvent(byte[] key, byte[] event) throws Exception {
+                if (failing) {
+                    throw new IllegalStateException("listener failed");
+                }
+                CompletableFuture<Object> future = new CompletableFuture<>();
+                processing.put(new String(event, StandardCharsets.UTF_8), future);
+                return future;
+            }
+
+            @Override
+            public boolean isSaturated() {
+                return saturated;
+            }
+        });
+        consumer.rebalance(Collections.singletonList(PARTITION));
+        consumer.updateBeginningOffsets(Collections.singletonMap(PARTITION, 0L));
+    }
+
+    @Test
+    void testCommitAfterOutOfOrderCompletion() {
+        addRecords("a", "b", "c");
+        topic.poll();
+        assertEquals(List.of("0", "1", "2"), new ArrayList<>(processing.keySet()));
+
+        processing.get("2").complete(null);
+        processing.get("1").complete(null);
+        topic.poll();
+        // the first record is still in progress
+        assertNull(committed());
+
+        processing.get("0").complete(null);
+        topic.poll();
+        assertEquals(3, committed().offset());
+        assertEquals(0, topic.getPendingCount());
+    }
+
+    @Test
+    void testSameKeyInOrder() {
+        addRecords("a", "a", "b");
+        topic.poll();
+        // the second record with key a waits for the first one
+        assertEquals(List.of("0", "2"), new ArrayList<>(processing.keySet()));
+
+        processing.get("0").complete(null);
+        assertEquals(List.of("0", "2", "1"), new ArrayList<>(processing.keySet()));
+    }
+
+    @Test
+    void testRewindToCancelledRecord() {
+        addRecords("a", "b", "c");
+        topic.poll();
+        processing.get("0").complete(null);
+        // e.g. dropped by the worker pool
+        processing.get("1").cancel(false);
+        processing.get("2").complete(null);
+        topic.poll();
+
+        assertEquals(1, committed().offset());
+        assertEquals(1, consumer.position(PARTITION));
+        assertTrue(consumer.paused().contains(PARTITION));
+        assertEquals(0, topic.getPendingCount());
+    }
+
+    @Test
+    void testRewindWhenListenerFails() {
+        failing = true;
+        addRecords("a");
+        topic.poll();
+
+        assertNull(committed());
+        assertEquals(0, consumer.position(PARTITION));
+        assertTrue(consumer.paused().contains(PARTITION));
+    }
+
+    @Test
+    void testRevokeCommitsCompletedRecords() {
+        addRecords("a", "b");
+        topic.poll();
+        processing.get("0").complete(null);
+
+        topic.revoke(Collections.singletonList(PARTITION));
+        assertEquals(1, committed().offset());
+        assertEquals(0, topic.getPendingCount());
+    }
+
+    @Test
+    void testCloseCommitsWhenInterrupted() {
+        addRecords("a", "b");
+        topic.poll();
+        processing.get("0").complete(null);
+
+        // the consuming thread is stopped by an interrupt
+        Thread.currentThread().interrupt();
+        topic.close();
+        assertTrue(Thread.interrupted());
+        assertEquals(1, lastCommitted.offset());
+    }
+
+    @Test
+    void testPauseAndResume() {
+        saturated = true;
+        addRecords("a");
+        topic.poll();
+        assertEquals(Collections.singleton(PARTITION), consumer.paused());
+
+        saturated = false;
+        processing.get("0").complete(null);
+        topic.poll();
+        assertTrue(consumer.paused().isEmpty());
+        assertEquals(1, committed().offset());
+    }
+
+    private void addRecords(String... keys) {
+        for (String key : keys) {
+            consumer.addRecord(new ConsumerRecord<>(TOPIC, 0, nextOffset, key.getBytes(StandardCharsets.UTF_8),
+                    Long.toString(nextOffset).getBytes(StandardCharsets.UTF_8)));
+            nextOffset++;
+        }
+    }
+
+    private OffsetAndMetadata committed() {
+        return consumer.committed(Collections.singleton(PARTITION)).get(PARTITION);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2022 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @authors Christof Strack, Stefan Witschel
+ */
+
+package dynamic.mapping.core.cache;
+
+import com.api.jsonata4java.expressions.Expressions;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StreamingPathExtractorTest {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final String PAYLOAD = "{\"mea\":[{\"tid\":\"uuid_01\",\"values\":{\"value\":4.6,\"unit\":\"C\"}},"
+            + "{\"tid\":\"uuid_02\",\"values\":{\"value\":5.1,\"unit\":\"C\"}}],"
+            + "\"device\":{\"id\":\"berlin_01\",\"firmware\":{\"version\":\"1.0\"}},"
+            + "\"time\":\"2022-08-05T00:14:49.389+02:00\",\"ignored\":{\"large\":[1,2,3]}}";
+
+    @Test
+    void testSimplePaths() {
+        assertTrue(StreamingPathExtractor.isSimplePath("device.id"));
+        assertTrue(StreamingPathExtractor.isSimplePath("_time"));
+        assertFalse(StreamingPathExtractor.isSimplePath("mea[0].tid"));
+        assertFalse(StreamingPathExtractor.isSimplePath("$number(value)"));
+        assertFalse(StreamingPathExtractor.isSimplePath("device.id & '_suffix'"));
+        assertFalse(StreamingPathExtractor.isSimplePath("true"));
+        assertNull(StreamingPathExtractor.compile(List.of("device.id", "$now()"), objectMapper));
+    }
+
+    @Test
+    void testExtractionMatchesCompletePayload() throws Exception {
+        List<String> paths = List.of("mea.values.value", "mea.tid", "device.id", "time", "missing.path",
+                "_TOPIC_LEVEL_[1]");
+        StreamingPathExtractor extractor = StreamingPathExtractor.compile(paths, objectMapper);
+        JsonNode pruned = extractor.extract(PAYLOAD.getBytes(StandardCharsets.UTF_8));
+        JsonNode complete = objectMapper.readTree(PAYLOAD);
+
+        assertFalse(pruned.has("ignored"));
+        assertFalse(pruned.get("device").has("firmware"));
+        for (String path : paths.subList(0, 5)) {
+            Expressions expression = Expressions.parse(path);
+            assertEquals(expression.evaluate(complete), expression.evaluate(pruned), path);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2022 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @authors Christof Strack, Stefan Witschel
+ */
+
+package dynamic.mapping.core.spool;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RequestSpoolTest {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    // small segments, so a few requests span several segment files
+    private static final int SEGMENT_SIZE = 300;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testReplayInAppendOrder() throws Exception {
+        try (RequestSpool spool = new RequestSpool("t1", directory, SEGMENT_SIZE, objectMapper)) {
+            append(spool, 10);
+            assertEquals(10, spool.getDepth());
+            assertEquals(0, spool.getOldestSpooledAt());
+            assertTrue(spool.hasPending("device_0"));
+            List<RequestSpool.Entry> entries = spool.peek(100);
+            for (int i = 0; i < entries.size(); i++) {
+                assertEquals("{\"i\":" + i + "}", spool.read(entries.get(i)).getRequest());
+                spool.markReplayed(entries.get(i));
+            }
+            assertEquals(0, spool.getDepth());
+            assertFalse(spool.hasPending("device_0"));
+            // only the active segment is kept
+            assertEquals(1, countSegments());
+        }
+    }
+
+    @Test
+    void testRecoverPendingRequests() throws Exception {
+        try (RequestSpool spool = new RequestSpool("t1", directory, SEGMENT_SIZE, objectMapper)) {
+            append(spool, 10);
+            for (RequestSpool.Entry entry : spool.peek(3)) {
+                spool.markReplayed(entry);
+            }
+        }
+        try (RequestSpool spool = new RequestSpool("t1", directory, SEGMENT_SIZE, objectMapper)) {
+            assertEquals(7, spool.getDepth());
+            assertEquals(3, spool.getOldestSpooledAt());
+            assertEquals("{\"i\":3}", spool.read(spool.peek(1).get(0)).getRequest());
+            // appending continues after the recovered requests
+            spool.append(new SpooledRequest("EVENT", "device_9", "mapping", "{}", 99));
+            List<RequestSpool.Entry> entries = spool.peek(100);
+            assertEquals(8, entries.size());
+            assertEquals("device_9", entries.get(7).getSource());
+        }
+    }
+
+    @Test
+    void testRejectWhenFull() throws Exception {
+        try (RequestSpool spool = new RequestSpool("t1", directory, SEGMENT_SIZE, objectMapper)) {
+            SpooledRequest request = new SpooledRequest("EVENT", "device_0", "mapping", "{}", 0);
+            int count = 0;
+            try {
+                while (count < 100) {
+                    spool.append(request, 2 * SEGMENT_SIZE);
+                    count++;
+                }
+            } catch (RequestSpool.FullException e) {
+                // expected, when the two segments are filled
+            }
+            assertTrue(count > 0 && count < 100);
+            assertEquals(count, spool.getDepth());
+            assertEquals(2 * SEGMENT_SIZE, spool.getSize());
+        }
+    }
+
+    private void append(RequestSpool spool, int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            spool.append(new SpooledRequest("MEASUREMENT", "device_" + (i % 2), "mapping", "{\"i\":" + i + "}", i));
+        }
+    }
+
+    private long countSegments() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2022 Software AG, Darmstadt, Germany and/or Software AG USA Inc., Reston, VA, USA,
+ * and/or its subsidiaries and/or its affiliates and/or their licensors.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @authors Christof Strack, Stefan Witschel
+ */
+
+package dynamic.mapping.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MappingTopicTrieTest {
+
+    private static Mapping createMapping(String id, String mappingTopic) {
+        Mapping mapping = new Mapping();
+        mapping.id = id;
+        mapping.mappingTopic = mappingTopic;
+        return mapping;
+    }
+
+    @Test
+    void testResolveWildcards() {
+        Mapping m1 = createMapping("m1", "a/#");
+        Mapping m2 = createMapping("m2", "a/+/c");
+        Mapping m3 = createMapping("m3", "/device/+/east/");
+        Mapping m4 = createMapping("m4", "a/b/c");
+        MappingTopicTrie trie = MappingTopicTrie.build(List.of(m1, m2, m3, m4));
+
+        assertEquals(List.of(m1), trie.resolve("a"));
+        assertEquals(List.of(m1), trie.resolve("a/"));
+        assertEquals(List.of(m1, m4, m2), trie.resolve("a/b/c"));
+        assertEquals(List.of(m1, m2), trie.resolve("a/x/c"));
+        assertEquals(List.of(m1), trie.resolve("a/b/c/d"));
+        assertEquals(List.of(m3), trie.resolve("/device/us/east/"));
+        assertTrue(trie.resolve("/device/us/east").isEmpty());
+        assertTrue(trie.resolve("b").isEmpty());
+    }
+
+    @Test
+    void testSystemTopicsAreNotMatchedByWildcards() {
+        Mapping m1 = createMapping("m1", "#");
+        Mapping m2 = createMapping("m2", "+/x");
+        Mapping m3 = createMapping("m3", "$SYS/x");
+        MappingTopicTrie trie = MappingTopicTrie.build(List.of(m1, m2, m3));
+
+        assertEquals(List.of(m3), trie.resolve("$SYS/x"));
+        assertEquals(List.of(m1, m2), trie.resolve("y/x"));
+    }
+
+    @Test
+    void testCopyOnWrite() {
+        Mapping m1 = createMapping("m1", "a/+");
+        Mapping m2 = createMapping("m2", "a/b");
+        MappingTopicTrie trie = MappingTopicTrie.build(List.of(m1));
+        MappingTopicTrie updated = trie.withMapping(m2);
+
+        assertEquals(List.of(m1), trie.resolve("a/b"));
+        assertEquals(List.of(m2, m1), updated.resolve("a/b"));
+        assertEquals(List.of(m1), updated.withoutMapping(m2).resolve("a/b"));
+        assertEquals(2, updated.size());
+    }
+}
@@ -64,6 +64,28 @@ export interface ServiceConfiguration {
   sendNotificationLifecycle: boolean;
   externalExtensionEnabled?: boolean;
   outboundMappingEnabled: boolean;
+  inboundWorkerPoolSize?: number;
+  inboundQueueCapacity?: number;
+  inboundRejectionPolicy?: RejectionPolicy;
+  topicCacheSize?: number;
+  identityCacheSize?: number;
+  identityCacheTtl?: number;
+  identityCacheNegativeTtl?: number;
+  measurementBatchEnabled?: boolean;
+  measurementBatchSize?: number;
+  measurementBatchMaxDelay?: number;
+  maxInFlightRequests?: number;
+  streamingExtractionEnabled?: boolean;
+  spoolEnabled?: boolean;
+  spoolReplayRate?: number;
+  spoolMaxSize?: number;
+  maxInFlightNotifications?: number;
+}
+
+export enum RejectionPolicy {
+  BLOCK = 'BLOCK',
+  DROP_OLDEST = 'DROP_OLDEST',
+  SPILL = 'SPILL'
 }
 
 export interface ConnectorStatusEvent {
@@ -160,6 +160,18 @@ export interface MappingStatus {
   messagesReceived: number;
   snoopedTemplatesTotal: number;
   snoopedTemplatesActive: number;
+  bytesProcessed?: number;
+  requestsSent?: number;
+  latency?: { [stage: string]: StageLatency };
+}
+
+export interface StageLatency {
+  count: number;
+  mean: number;
+  max: number;
+  p50?: number;
+  p95?: number;
+  p99?: number;
 }
 
 export const API = {